@@ -0,0 +1,136 @@
+package enigma;
+
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Timings of operations whose speed matters, run by "make bench" apart
+ * from the unit tests, so that the tests do not depend on the speed of
+ * the computer running them.  Each timing is reported, and the run
+ * exits with code 1 if one exceeds its limit.
+ *
+ * @author Wendi Zhang
+ */
+class Benchmark {
+
+    /**
+     * Run the benchmarks.
+     */
+    public static void main(String[] ignored) {
+        String alpha = largeAlphabet();
+        Random random = new Random(24);
+        String config = largeConfig(alpha, random);
+        String settings = largeSettings(alpha, random);
+        char[] msg = new char[MESSAGE_LENGTH];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = alpha.charAt(random.nextInt(alpha.length()));
+        }
+        Machine[] mach = new Machine[1];
+        boolean ok = time("load a " + alpha.length() + "-character config",
+                LOAD_LIMIT, () -> {
+                    mach[0] = Main.readConfig(new StringReader(config));
+                    mach[0].setUp(settings);
+                });
+        ok &= time("convert " + msg.length + " characters with it",
+                CONVERT_LIMIT,
+                () -> mach[0].convert(msg, 0, msg.length, msg, 0));
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Run BODY, report how long it took under the name WHAT, and return
+     * true iff that was at most LIMIT milliseconds.
+     */
+    private static boolean time(String what, long limit, Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        long millis = (System.nanoTime() - start) / 1000000;
+        boolean ok = millis <= limit;
+        System.out.printf("%s: %d ms (limit %d ms)%s%n", what, millis,
+                limit, ok ? "" : " TOO SLOW");
+        return ok;
+    }
+
+    /**
+     * Return all the characters that may appear in the alphabet of a
+     * configuration file, less one if needed to make their number even:
+     * about 63,000 of them.
+     */
+    static String largeAlphabet() {
+        StringBuilder alpha = new StringBuilder();
+        for (char ch = '!'; ch < Character.MAX_VALUE; ch += 1) {
+            if (!Character.isSurrogate(ch) && !Character.isWhitespace(ch)
+                    && !Character.isSpaceChar(ch) && ch != '\u0085'
+                    && "()-".indexOf(ch) < 0) {
+                alpha.append(ch);
+            }
+        }
+        alpha.setLength(alpha.length() & ~1);
+        return alpha.toString();
+    }
+
+    /**
+     * Return a configuration over ALPHA, which has an even number of
+     * characters, with a reflector R, a non-moving rotor F and a moving
+     * rotor M, wired at random by RANDOM.
+     */
+    static String largeConfig(String alpha, Random random) {
+        int n = alpha.length();
+        char[] chars = alpha.toCharArray();
+        StringBuilder config = new StringBuilder(alpha);
+        config.append("\n 3 1\n R R");
+        shuffle(chars, random);
+        for (int i = 0; i < n; i += 2) {
+            config.append(" (").append(chars, i, 2).append(")");
+        }
+        shuffle(chars, random);
+        config.append("\n F N (").append(chars, 0, n / 2);
+        shuffle(chars, random);
+        config.append(")\n M M").append(alpha.charAt(1))
+                .append(" (").append(chars).append(")\n");
+        return config.toString();
+    }
+
+    /**
+     * Return a settings line for a configuration from largeConfig over
+     * ALPHA, with a plugboard pairing all of ALPHA at random by RANDOM.
+     */
+    static String largeSettings(String alpha, Random random) {
+        int n = alpha.length();
+        char[] chars = alpha.toCharArray();
+        shuffle(chars, random);
+        StringBuilder settings = new StringBuilder("* R F M ");
+        settings.append(alpha.charAt(0)).append(alpha.charAt(n - 1));
+        for (int i = 0; i < n; i += 2) {
+            settings.append(" (").append(chars, i, 2).append(")");
+        }
+        return settings.toString();
+    }
+
+    /**
+     * Put the characters of CHARS in an order chosen by RANDOM.
+     */
+    private static void shuffle(char[] chars, Random random) {
+        for (int i = chars.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char tmp = chars[i];
+            chars[i] = chars[j];
+            chars[j] = tmp;
+        }
+    }
+
+    /**
+     * Length of the message converted.
+     */
+    private static final int MESSAGE_LENGTH = 1 << 20;
+
+    /**
+     * Most milliseconds allowed for loading the large configuration.
+     */
+    private static final long LOAD_LIMIT = 1000;
+
+    /**
+     * Most milliseconds allowed for converting the message.
+     */
+    private static final long CONVERT_LIMIT = 1000;
+}
@@ -0,0 +1,131 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * The alphabet of all 256 byte values, for converting binary data.
+ * Byte b is the character (char) b, as in ISO-8859-1, so that bytes
+ * and characters convert to the same indices.  In configurations and
+ * settings lines, bytes are written as two hex digits each.
+ *
+ * @author Wendi Zhang
+ */
+class ByteAlphabet extends Alphabet {
+
+    @Override
+    int size() {
+        return SIZE;
+    }
+
+    @Override
+    boolean contains(char ch) {
+        return ch < SIZE;
+    }
+
+    @Override
+    char toChar(int index) {
+        if (index < 0 || index >= SIZE) {
+            throw error("character index out of range");
+        }
+        return (char) index;
+    }
+
+    @Override
+    int toInt(char ch) {
+        if (ch >= SIZE) {
+            throw error("character out of range");
+        }
+        return ch;
+    }
+
+    /**
+     * Set FORWARD and INVERSE to the permutation of byte values, and its
+     * inverse, given by CYCLES, which holds cycles of two-digit hex
+     * numbers such as "(00 3F 41) (0D 0A)".  Bytes in no cycle map to
+     * themselves.
+     */
+    static void readCycles(String cycles, int[] forward, int[] inverse) {
+        for (int b = 0; b < forward.length; b += 1) {
+            forward[b] = inverse[b] = b;
+        }
+        boolean[] seen = new boolean[forward.length];
+        int i = 0;
+        while (i < cycles.length()) {
+            if (Character.isWhitespace(cycles.charAt(i))) {
+                i += 1;
+                continue;
+            }
+            int close = cycles.indexOf(')', i);
+            if (cycles.charAt(i) != '(' || close < 0) {
+                throw error("wrong format of cycle");
+            }
+            String[] values = cycles.substring(i + 1, close).trim()
+                    .split("\\s+");
+            if (values[0].isEmpty()) {
+                throw error("wrong format of permutation:"
+                        + "added cycle cannot be empty");
+            }
+            int[] cycle = new int[values.length];
+            for (int j = 0; j < values.length; j += 1) {
+                cycle[j] = parse(values[j]);
+                if (seen[cycle[j]]) {
+                    throw error("byte %s appears twice in cycles",
+                            values[j]);
+                }
+                seen[cycle[j]] = true;
+            }
+            for (int j = 0; j < cycle.length; j += 1) {
+                forward[cycle[j]] = cycle[(j + 1) % cycle.length];
+                inverse[cycle[(j + 1) % cycle.length]] = cycle[j];
+            }
+            i = close + 1;
+        }
+    }
+
+    /**
+     * Return the byte value written as the two hex digits HEX.
+     */
+    static int parse(String hex) {
+        int high = hex.length() == 2 ? hexDigit(hex.charAt(0)) : -1;
+        int low = hex.length() == 2 ? hexDigit(hex.charAt(1)) : -1;
+        if (high < 0 || low < 0) {
+            throw error("bad byte value %s", hex);
+        }
+        return high * 16 + low;
+    }
+
+    /**
+     * Return the value of the ASCII hex digit C (0-9, A-F or a-f), or -1
+     * if C is anything else, including a digit of some other script.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the characters whose byte values HEX spells out with two
+     * hex digits each, as in "00FF20" for the setting of three rotors.
+     */
+    static String decode(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw error("bad byte value %s", hex);
+        }
+        char[] result = new char[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (char) parse(hex.substring(2 * i, 2 * i + 2));
+        }
+        return new String(result);
+    }
+
+    /**
+     * Number of byte values.
+     */
+    static final int SIZE = 256;
+}
@@ -0,0 +1,91 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The conversion of encoded text by a TextConverter, for the Enigma
+ * byte channels.  Bytes are decoded into a fixed-size character buffer,
+ * converted there, and encoded into a fixed-size byte buffer, so that
+ * converting allocates nothing.  Malformed input is replaced, as it is
+ * by ChannelReader.
+ *
+ * @author Wendi Zhang
+ */
+class ByteConverter {
+
+    /**
+     * A converter of text encoded in CHARSET by TEXT.
+     */
+    ByteConverter(TextConverter text, Charset charset) {
+        _text = text;
+        _decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _chars = CharBuffer.allocate(
+                (int) Math.ceil(MAX_INPUT * _decoder.maxCharsPerByte()) + 1);
+        _bytes = ByteBuffer.allocate(
+                (int) Math.ceil(_chars.capacity() * _encoder.maxBytesPerChar())
+                + MAX_INPUT);
+    }
+
+    /**
+     * Convert the remaining bytes of IN, which are at most MAX_INPUT,
+     * and return a buffer holding the converted bytes, ready for
+     * reading, which is valid until the next call.  The bytes of an
+     * incomplete character at the end of IN are left in IN unless
+     * ENDOFINPUT, which says that IN holds the last of the input.
+     */
+    ByteBuffer convert(ByteBuffer in, boolean endOfInput) {
+        _chars.clear();
+        _decoder.decode(in, _chars, endOfInput);
+        if (endOfInput) {
+            _decoder.flush(_chars);
+        }
+        int n = _text.convert(_chars.array(), 0, _chars.position());
+        _chars.position(0).limit(n);
+        _bytes.clear();
+        _encoder.encode(_chars, _bytes, endOfInput);
+        if (endOfInput) {
+            _encoder.flush(_bytes);
+        }
+        return _bytes.flip();
+    }
+
+    /**
+     * Most bytes of input to one call of convert.
+     */
+    static final int MAX_INPUT = 1 << 13;
+
+    /**
+     * Converter of the decoded characters.
+     */
+    private final TextConverter _text;
+
+    /**
+     * Decoder for the input.
+     */
+    private final CharsetDecoder _decoder;
+
+    /**
+     * Encoder for the output.
+     */
+    private final CharsetEncoder _encoder;
+
+    /**
+     * Decoded characters.
+     */
+    private final CharBuffer _chars;
+
+    /**
+     * Encoded characters.
+     */
+    private final ByteBuffer _bytes;
+}
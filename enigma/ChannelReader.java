@@ -0,0 +1,167 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A buffered reader of Enigma input from a channel, which is decoded in
+ * a fixed-size buffer.
+ *
+ * @author Wendi Zhang
+ */
+class ChannelReader extends MessageReader {
+
+    /**
+     * A reader of the text in IN, encoded in CHARSET.
+     */
+    ChannelReader(ReadableByteChannel in, Charset charset) {
+        _in = in;
+        _decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        _chars = CharBuffer.allocate(BUFFER_SIZE);
+        _chars.flip();
+    }
+
+    @Override
+    boolean hasNextLine() {
+        return fill(1);
+    }
+
+    @Override
+    boolean atSettingsLine() {
+        if (!fill(2)) {
+            return false;
+        }
+        int p = _chars.position();
+        if (_chars.get(p) != '*') {
+            return false;
+        }
+        return _chars.remaining() == 1 || _chars.get(p + 1) == ' '
+                || isLineEnd(_chars.get(p + 1));
+    }
+
+    @Override
+    String nextLine() {
+        if (!fill(1)) {
+            throw error("input truncated");
+        }
+        StringBuilder line = new StringBuilder();
+        while (fill(1)) {
+            char c = _chars.get();
+            if (isLineEnd(c)) {
+                skipNewline(c);
+                break;
+            }
+            line.append(c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    int readLetters(char[] buf, int off, int len) {
+        if (_lineEnded) {
+            _lineEnded = false;
+            return -1;
+        }
+        int n = 0;
+        while (n < len) {
+            if (!_chars.hasRemaining() && !fill(1)) {
+                return n == 0 ? -1 : n;
+            }
+            char c = _chars.get();
+            if (isLineEnd(c)) {
+                skipNewline(c);
+                if (n == 0) {
+                    return -1;
+                }
+                _lineEnded = true;
+                break;
+            }
+            int normal = normalize(c);
+            if (normal >= 0) {
+                buf[off + n] = (char) normal;
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Having just read the line terminator C, skip the \n of a \r\n.
+     */
+    private void skipNewline(char c) {
+        if (c == '\r' && fill(1) && _chars.get(_chars.position()) == '\n') {
+            _chars.get();
+        }
+    }
+
+    /**
+     * Try to have at least K decoded characters ready, reading more
+     * input as needed.  Return true iff at least one is ready.
+     */
+    private boolean fill(int k) {
+        while (_chars.remaining() < k && !_eof) {
+            _chars.compact();
+            try {
+                if (_in.read(_bytes) < 0) {
+                    _eof = true;
+                }
+            } catch (IOException excp) {
+                throw error("could not read input: %s", excp.getMessage());
+            }
+            _bytes.flip();
+            _decoder.decode(_bytes, _chars, _eof);
+            if (_eof) {
+                _decoder.flush(_chars);
+            }
+            _bytes.compact();
+            _chars.flip();
+        }
+        return _chars.hasRemaining();
+    }
+
+    /**
+     * Size of the input buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * Source of input.
+     */
+    private final ReadableByteChannel _in;
+
+    /**
+     * Decoder for the input.
+     */
+    private final CharsetDecoder _decoder;
+
+    /**
+     * Bytes read but not yet decoded, ready for filling.
+     */
+    private final ByteBuffer _bytes;
+
+    /**
+     * Characters decoded but not yet consumed, ready for draining.
+     */
+    private final CharBuffer _chars;
+
+    /**
+     * True once _in is exhausted.
+     */
+    private boolean _eof;
+
+    /**
+     * True iff readLetters has consumed a line terminator but not yet
+     * reported the end of the line.
+     */
+    private boolean _lineEnded;
+}
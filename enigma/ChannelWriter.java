@@ -0,0 +1,94 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A writer of converted message lines to a channel, encoded from a
+ * fixed-size buffer.
+ *
+ * @author Wendi Zhang
+ */
+class ChannelWriter extends GroupWriter {
+
+    /**
+     * A writer to OUT, encoding in CHARSET.
+     */
+    ChannelWriter(WritableByteChannel out, Charset charset) {
+        _out = out;
+        _encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _chars = CharBuffer.allocate(BUFFER_SIZE);
+        _bytes = ByteBuffer.allocate(BUFFER_SIZE * 4);
+    }
+
+    @Override
+    void put(char c) {
+        if (!_chars.hasRemaining()) {
+            drain();
+        }
+        _chars.put(c);
+    }
+
+    @Override
+    void flush() {
+        drain();
+    }
+
+    /**
+     * Encode the characters in _chars and write them to _out.
+     */
+    private void drain() {
+        _chars.flip();
+        try {
+            while (true) {
+                boolean done = !_encoder.encode(_chars, _bytes, false)
+                        .isOverflow();
+                _bytes.flip();
+                while (_bytes.hasRemaining()) {
+                    _out.write(_bytes);
+                }
+                _bytes.clear();
+                if (done) {
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        _chars.compact();
+    }
+
+    /**
+     * Size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * Destination of output.
+     */
+    private final WritableByteChannel _out;
+
+    /**
+     * Encoder for the output.
+     */
+    private final CharsetEncoder _encoder;
+
+    /**
+     * Characters written to me but not yet to _out, ready for filling.
+     */
+    private final CharBuffer _chars;
+
+    /**
+     * Encoded characters, ready for filling.
+     */
+    private final ByteBuffer _bytes;
+}
@@ -0,0 +1,27 @@
+package enigma;
+
+/**
+ * What the stream adapters (EnigmaReader, EnigmaWriter and the Enigma
+ * byte channels, all reachable through Enigma) do with characters that
+ * are not in the alphabet of their machine.  The machine does not step
+ * for such characters.
+ *
+ * @author Wendi Zhang
+ */
+public enum CharPolicy {
+
+    /**
+     * Copy the character to the output unchanged.
+     */
+    PASS,
+
+    /**
+     * Leave the character out of the output.
+     */
+    DROP,
+
+    /**
+     * Throw an EnigmaException.
+     */
+    REJECT
+}
@@ -0,0 +1,169 @@
+package enigma;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of preallocated chunks passed from one producer thread
+ * to one consumer thread.  The producer claims the next free chunk,
+ * fills it, and publishes it; the consumer takes the next published
+ * chunk, uses it, and releases it for reuse.  A producer that gets
+ * ahead of the consumer by the capacity of the ring waits, so the ring
+ * size bounds both memory and how far one stage runs ahead of the next.
+ * Either side may abort the ring, which makes all waits return null.
+ *
+ * @author Wendi Zhang
+ */
+class ChunkRing {
+
+    /**
+     * A ring of CAPACITY chunks, each holding up to CHUNKSIZE characters.
+     */
+    ChunkRing(int capacity, int chunkSize) {
+        _slots = new Chunk[capacity];
+        for (int i = 0; i < capacity; i += 1) {
+            _slots[i] = new Chunk(chunkSize);
+        }
+    }
+
+    /**
+     * Return the next chunk for the producer to fill, waiting until one
+     * is free, or null if I have been aborted.
+     */
+    Chunk claim() {
+        long tail = _tail;
+        int spins = 0;
+        while (tail - _head >= _slots.length) {
+            if (_aborted) {
+                return null;
+            }
+            spins = pause(spins);
+        }
+        return _slots[(int) (tail % _slots.length)];
+    }
+
+    /**
+     * Hand the chunk last returned by claim to the consumer.
+     */
+    void publish() {
+        _tail = _tail + 1;
+    }
+
+    /**
+     * Return the next published chunk, waiting until there is one, or
+     * null if I have been aborted.
+     */
+    Chunk take() {
+        long head = _head;
+        int spins = 0;
+        while (head >= _tail) {
+            if (_aborted) {
+                return null;
+            }
+            spins = pause(spins);
+        }
+        return _slots[(int) (head % _slots.length)];
+    }
+
+    /**
+     * Return the chunk last returned by take to the producer.
+     */
+    void release() {
+        _head = _head + 1;
+    }
+
+    /**
+     * Stop both sides: waits in progress and later return null.
+     */
+    void abort() {
+        _aborted = true;
+    }
+
+    /**
+     * Wait a little, having already waited SPINS times, and return the
+     * new number of waits.  Spins briefly before parking, so that a
+     * stage stalled on a slow neighbor does not burn a processor.
+     */
+    private static int pause(int spins) {
+        if (spins < MAX_SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return spins + 1;
+    }
+
+    /**
+     * One unit passed through a ring: a piece of a message line, the end
+     * of a line, a settings line, an error, or the end of the input.
+     */
+    static final class Chunk {
+
+        /**
+         * A chunk with room for SIZE characters.
+         */
+        Chunk(int size) {
+            data = new char[size];
+        }
+
+        /**
+         * What this chunk holds: one of the constants below.
+         */
+        int kind;
+
+        /**
+         * The characters of a LETTERS chunk, in data[0 .. length-1].
+         */
+        char[] data;
+
+        /**
+         * The number of characters in a LETTERS chunk.
+         */
+        int length;
+
+        /**
+         * The line of a SETTINGS chunk.
+         */
+        String line;
+
+        /**
+         * The error of an ERROR chunk from the reading stage.
+         */
+        RuntimeException error;
+
+        /**
+         * Kinds of chunk.
+         */
+        static final int LETTERS = 0, LINE_END = 1, SETTINGS = 2,
+                ERROR = 3, END = 4;
+    }
+
+    /**
+     * Number of busy waits before a waiting thread starts parking.
+     */
+    private static final int MAX_SPINS = 1 << 10;
+
+    /**
+     * Time a waiting thread parks between checks, in nanoseconds.
+     */
+    private static final long PARK_NANOS = 20000;
+
+    /**
+     * The chunks, used in rotation.
+     */
+    private final Chunk[] _slots;
+
+    /**
+     * Number of chunks released by the consumer.
+     */
+    private volatile long _head;
+
+    /**
+     * Number of chunks published by the producer.
+     */
+    private volatile long _tail;
+
+    /**
+     * True once abort has been called.
+     */
+    private volatile boolean _aborted;
+}
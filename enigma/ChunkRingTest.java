@@ -0,0 +1,169 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The suite of all JUnit tests for the ChunkRing class.
+ *
+ * @author Wendi Zhang
+ */
+public class ChunkRingTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /**
+     * Return a started thread that runs BODY, recording in FAILURE
+     * anything it throws.
+     */
+    private static Thread start(Runnable body,
+                                AtomicReference<Throwable> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable excp) {
+                failure.set(excp);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Wait until THREAD is waiting.
+     */
+    private static void awaitBlocked(Thread thread) {
+        while (thread.getState() != Thread.State.TIMED_WAITING
+               && thread.isAlive()) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Wait for THREAD to finish.
+     */
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException excp) {
+            fail("interrupted");
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWraparound() {
+        ChunkRing ring = new ChunkRing(3, 4);
+        ChunkRing.Chunk[] seen = new ChunkRing.Chunk[10];
+        for (int i = 0; i < 10; i += 1) {
+            ChunkRing.Chunk chunk = ring.claim();
+            chunk.kind = ChunkRing.Chunk.LETTERS;
+            chunk.length = i;
+            ring.publish();
+            seen[i] = ring.take();
+            assertSame(chunk, seen[i]);
+            assertEquals(i, seen[i].length);
+            ring.release();
+        }
+        for (int i = 3; i < 10; i += 1) {
+            assertSame(seen[i - 3], seen[i]);
+        }
+        assertNotSame(seen[0], seen[1]);
+        assertNotSame(seen[1], seen[2]);
+    }
+
+    @Test
+    public void testFullRingHoldsProducer() {
+        ChunkRing ring = new ChunkRing(2, 4);
+        for (int i = 0; i < 2; i += 1) {
+            ring.claim().length = i;
+            ring.publish();
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = start(() -> {
+            ring.claim().length = 2;
+            ring.publish();
+        }, failure);
+        awaitBlocked(producer);
+        assertTrue(producer.isAlive());
+        assertEquals(0, ring.take().length);
+        ring.release();
+        join(producer);
+        assertNull(failure.get());
+        for (int i = 1; i < 3; i += 1) {
+            assertEquals(i, ring.take().length);
+            ring.release();
+        }
+    }
+
+    @Test
+    public void testParkAndResume() {
+        ChunkRing ring = new ChunkRing(2, 1);
+        int count = 2000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = start(() -> {
+            for (int i = 0; i < count; i += 1) {
+                ChunkRing.Chunk chunk = ring.claim();
+                chunk.data[0] = (char) i;
+                chunk.kind = i == count - 1 ? ChunkRing.Chunk.END
+                        : ChunkRing.Chunk.LETTERS;
+                ring.publish();
+            }
+        }, failure);
+        for (int i = 0; i < count; i += 1) {
+            if (i % 100 == 0) {
+                awaitBlocked(producer);
+            }
+            ChunkRing.Chunk chunk = ring.take();
+            assertEquals((char) i, chunk.data[0]);
+            assertEquals(i == count - 1, chunk.kind == ChunkRing.Chunk.END);
+            ring.release();
+        }
+        join(producer);
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testAbortWhileClaiming() {
+        ChunkRing ring = new ChunkRing(1, 4);
+        ring.claim();
+        ring.publish();
+        AtomicReference<ChunkRing.Chunk> claimed =
+                new AtomicReference<>(new ChunkRing.Chunk(0));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = start(() -> claimed.set(ring.claim()), failure);
+        awaitBlocked(producer);
+        ring.abort();
+        join(producer);
+        assertNull(failure.get());
+        assertNull(claimed.get());
+        assertNull(ring.claim());
+    }
+
+    @Test
+    public void testAbortWhileTaking() {
+        ChunkRing ring = new ChunkRing(4, 4);
+        AtomicReference<ChunkRing.Chunk> taken =
+                new AtomicReference<>(new ChunkRing.Chunk(0));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread consumer = start(() -> taken.set(ring.take()), failure);
+        awaitBlocked(consumer);
+        ring.abort();
+        join(consumer);
+        assertNull(failure.get());
+        assertNull(taken.get());
+        assertNull(ring.take());
+    }
+}
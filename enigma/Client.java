@@ -0,0 +1,150 @@
+package enigma;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A client of a Server, standing in for one run of Main.  It takes the
+ * same arguments as Main, sends the configuration file name and the
+ * input to the server, and writes back the output, error message and
+ * exit code of the run, so that scripts may use either interchangeably.
+ *
+ * @author Wendi Zhang
+ */
+class Client {
+
+    /**
+     * A client for a run of Main with the arguments ARGS: a
+     * configuration file name and optional input and output file names.
+     */
+    Client(String... args) {
+        if (args.length > 0 && args[0].startsWith("--")) {
+            throw error("%s cannot be used with --client", args[0]);
+        }
+        if (args.length < 1 || args.length > 3) {
+            throw error("Only 1, 2, or 3 command-line arguments allowed");
+        }
+        if (!Files.isReadable(Paths.get(args[0]))) {
+            throw error("could not open %s", args[0]);
+        }
+        _config = Paths.get(args[0]).toAbsolutePath().normalize()
+                .toString();
+        try {
+            if (args.length > 1) {
+                _input = FileChannel.open(Paths.get(args[1]));
+            } else {
+                _input = Channels.newChannel(System.in);
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", args[1]);
+        }
+        try {
+            if (args.length > 2) {
+                _output = FileChannel.open(Paths.get(args[2]),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } else {
+                _output = new FileOutputStream(FileDescriptor.out)
+                        .getChannel();
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", args[2]);
+        }
+    }
+
+    /**
+     * Carry out my run on the server at ADDRESS (as for Frames.address)
+     * and return its exit code.  The input is sent on a separate thread,
+     * so that a long input and its output can be in transit at once.
+     */
+    int run(String address) {
+        SocketChannel connection = Frames.connect(Frames.address(address));
+        try (connection) {
+            Frames.write(connection, Frames.CONFIG, _config);
+            Thread sender = new Thread(() -> send(connection));
+            sender.setDaemon(true);
+            sender.start();
+            return receive(connection);
+        } catch (IOException excp) {
+            throw error("lost connection to %s", address);
+        }
+    }
+
+    /**
+     * Send my input on CONNECTION as DATA frames followed by an END
+     * frame.  Stops quietly if the server has stopped reading.
+     */
+    private void send(SocketChannel connection) {
+        ByteBuffer buf = ByteBuffer.allocate(Frames.MAX_DATA);
+        try {
+            while (_input.read(buf.clear()) >= 0) {
+                Frames.write(connection, Frames.DATA, buf.flip());
+            }
+            Frames.write(connection, Frames.END, ByteBuffer.allocate(0));
+        } catch (IOException excp) {
+            /* The server has what it needs; its reply says the rest. */
+            return;
+        }
+    }
+
+    /**
+     * Copy the replies arriving on CONNECTION to my output and standard
+     * error, and return the exit code the server reports.
+     */
+    private int receive(SocketChannel connection) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+        ByteBuffer payload = ByteBuffer.allocate(Frames.MAX_PAYLOAD);
+        while (true) {
+            int type = Frames.readHeader(connection, header);
+            if (type < 0) {
+                throw new IOException("no exit code");
+            }
+            payload.clear().limit(header.getInt(1));
+            if (payload.hasRemaining()
+                && !Frames.readFully(connection, payload)) {
+                throw new IOException("truncated frame");
+            }
+            payload.flip();
+            if (type == Frames.DATA) {
+                while (payload.hasRemaining()) {
+                    _output.write(payload);
+                }
+            } else if (type == Frames.ERROR) {
+                System.err.printf("Error: %s%n", StandardCharsets.UTF_8
+                        .decode(payload));
+            } else if (type == Frames.EXIT) {
+                return payload.get();
+            } else {
+                throw new IOException("unexpected frame");
+            }
+        }
+    }
+
+    /**
+     * Absolute name of the configuration file.
+     */
+    private final String _config;
+
+    /**
+     * Source of input messages.
+     */
+    private final ReadableByteChannel _input;
+
+    /**
+     * Destination of output.
+     */
+    private final WritableByteChannel _output;
+}
@@ -0,0 +1,257 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * Configuration files compiled to a binary form (conventionally named
+ * *.enigmab), which loads without the parsing a text configuration
+ * needs.  A compiled file holds, all big-endian:
+ * <pre>
+ *   MAGIC, VERSION                    (ints)
+ *   alphabet kind                     (byte: RANGE, LIST or BYTES)
+ *   first and last character          (chars, for RANGE)
+ *   size n and the n characters       (int and chars, for LIST)
+ *   rotor slots, pawls, rotor count   (ints)
+ * </pre>
+ * followed by each rotor:
+ * <pre>
+ *   name length and UTF-8 name        (short and bytes)
+ *   flags                             (byte: ROTATES | REFLECTING)
+ *   forward and inverse permutation   (n chars each)
+ *   notch mask                        ((n + 7) / 8 bytes, bit i of
+ *                                      byte i / 8 for setting i)
+ * </pre>
+ *
+ * @author Wendi Zhang
+ */
+final class CompiledConfig {
+
+    /**
+     * First four bytes of a compiled configuration: "ENGB".
+     */
+    static final int MAGIC = 0x454e4742;
+
+    /**
+     * Version of the format written by compile.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Conventional extension of compiled configuration files.
+     */
+    static final String EXTENSION = ".enigmab";
+
+    /**
+     * Longest rotor name, in UTF-8 bytes, that can be compiled.
+     */
+    static final int MAX_NAME_LENGTH = 0xffff;
+
+    /**
+     * Not instantiable.
+     */
+    private CompiledConfig() {
+    }
+
+    /**
+     * Return true iff NAME names a compiled configuration file.
+     */
+    static boolean isCompiled(String name) {
+        return name.endsWith(EXTENSION);
+    }
+
+    /**
+     * Write the configuration of MACHINE, as returned by Main.readConfig,
+     * to the file named NAME.
+     */
+    static void compile(Machine machine, String name) {
+        ByteBuffer buf = ByteBuffer.allocate(size(machine));
+        Alphabet alpha = machine.alphabet();
+        int n = alpha.size();
+        buf.putInt(MAGIC).putInt(VERSION);
+        if (alpha instanceof ByteAlphabet) {
+            buf.put(BYTES);
+        } else if (alpha instanceof CharacterRange) {
+            buf.put(RANGE).putChar(alpha.toChar(0))
+                    .putChar(alpha.toChar(n - 1));
+        } else {
+            buf.put(LIST).putInt(n);
+            for (int i = 0; i < n; i += 1) {
+                buf.putChar(alpha.toChar(i));
+            }
+        }
+        List<RotorSpec> specs = sortedCatalog(machine);
+        buf.putInt(machine.numRotors()).putInt(machine.numPawls())
+                .putInt(specs.size());
+        for (RotorSpec spec : specs) {
+            byte[] rotorName = spec.name().getBytes(StandardCharsets.UTF_8);
+            if (rotorName.length > MAX_NAME_LENGTH) {
+                throw error("rotor name too long: %s", spec.name());
+            }
+            buf.putShort((short) rotorName.length).put(rotorName);
+            buf.put((byte) ((spec.rotates() ? ROTATES : 0)
+                    | (spec.reflecting() ? REFLECTING : 0)));
+            Permutation perm = spec.permutation();
+            for (int i = 0; i < n; i += 1) {
+                buf.putChar((char) perm.permute(i));
+            }
+            for (int i = 0; i < n; i += 1) {
+                buf.putChar((char) perm.invert(i));
+            }
+            byte[] mask = new byte[(n + 7) / 8];
+            for (int i = 0; i < n; i += 1) {
+                if (spec.notchAt(i)) {
+                    mask[i / 8] |= 1 << (i % 8);
+                }
+            }
+            buf.put(mask);
+        }
+        buf.flip();
+        try (FileChannel out = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /**
+     * Return a machine configured by the compiled configuration in the
+     * file open on CONFIG, which is closed afterwards.  The file is
+     * mapped rather than read.
+     */
+    static Machine load(FileChannel config) {
+        try (config) {
+            if (config.size() > Integer.MAX_VALUE) {
+                throw error("compiled configuration too large");
+            }
+            return load(config.map(FileChannel.MapMode.READ_ONLY, 0,
+                    config.size()));
+        } catch (IOException excp) {
+            throw error("could not read configuration: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /**
+     * Return a machine configured by the compiled configuration in BUF.
+     */
+    static Machine load(ByteBuffer buf) {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw error("not a compiled configuration");
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw error("unsupported compiled configuration version %d",
+                        version);
+            }
+            Alphabet alpha = loadAlphabet(buf);
+            int n = alpha.size();
+            int numRotors = buf.getInt();
+            int pawls = buf.getInt();
+            int count = buf.getInt();
+            List<Rotor> rotors = new ArrayList<>();
+            for (int r = 0; r < count; r += 1) {
+                byte[] rotorName = new byte[buf.getShort() & 0xffff];
+                buf.get(rotorName);
+                int flags = buf.get();
+                int[] forward = new int[n], inverse = new int[n];
+                for (int i = 0; i < n; i += 1) {
+                    forward[i] = buf.getChar();
+                }
+                for (int i = 0; i < n; i += 1) {
+                    inverse[i] = buf.getChar();
+                }
+                boolean[] notchAt = new boolean[n];
+                int bits = 0;
+                for (int i = 0; i < n; i += 1) {
+                    if (i % 8 == 0) {
+                        bits = buf.get();
+                    }
+                    notchAt[i] = (bits & (1 << (i % 8))) != 0;
+                }
+                rotors.add(new Rotor(RotorSpec.restore(
+                        new String(rotorName, StandardCharsets.UTF_8),
+                        new Permutation(forward, inverse, alpha), notchAt,
+                        (flags & ROTATES) != 0, (flags & REFLECTING) != 0)));
+            }
+            return new Machine(alpha, numRotors, pawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("compiled configuration truncated");
+        }
+    }
+
+    /**
+     * Return the alphabet described at the current position of BUF.
+     */
+    private static Alphabet loadAlphabet(ByteBuffer buf) {
+        byte kind = buf.get();
+        if (kind == BYTES) {
+            return new ByteAlphabet();
+        } else if (kind == RANGE) {
+            return new CharacterRange(buf.getChar(), buf.getChar());
+        } else if (kind == LIST) {
+            int n = buf.getInt();
+            if (n < 0 || n > buf.remaining() / 2) {
+                throw error("compiled configuration truncated");
+            }
+            char[] chars = new char[n];
+            for (int i = 0; i < n; i += 1) {
+                chars[i] = buf.getChar();
+            }
+            return new MyAlphabet(chars);
+        } else {
+            throw error("unknown alphabet kind in compiled configuration");
+        }
+    }
+
+    /**
+     * Return the rotors of MACHINE in order of name, so that compiling
+     * the same configuration always produces the same file.
+     */
+    private static List<RotorSpec> sortedCatalog(Machine machine) {
+        List<RotorSpec> specs = new ArrayList<>(machine.catalog());
+        specs.sort(Comparator.comparing(RotorSpec::name));
+        return specs;
+    }
+
+    /**
+     * Return the size of the compiled form of MACHINE's configuration.
+     */
+    private static int size(Machine machine) {
+        int n = machine.alphabet().size();
+        long size = 2 * 4 + 1 + 4 + 2L * n + 3 * 4;
+        for (RotorSpec spec : machine.catalog()) {
+            size += 2 + spec.name().getBytes(StandardCharsets.UTF_8).length
+                    + 1 + 4L * n + (n + 7) / 8;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw error("configuration too large to compile");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Alphabet kinds: a CharacterRange, a MyAlphabet, or a ByteAlphabet.
+     */
+    private static final byte RANGE = 0, LIST = 1, BYTES = 2;
+
+    /**
+     * Rotor flags.
+     */
+    private static final int ROTATES = 1, REFLECTING = 2;
+}
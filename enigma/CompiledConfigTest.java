@@ -0,0 +1,109 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the CompiledConfig class.
+ *
+ * @author Wendi Zhang
+ */
+public class CompiledConfigTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /**
+     * Return MACHINE after compiling it to a file and loading it again.
+     */
+    private Machine roundTrip(Machine machine) throws IOException {
+        File file = File.createTempFile("enigma", CompiledConfig.EXTENSION);
+        try {
+            CompiledConfig.compile(machine, file.getPath());
+            return CompiledConfig.load(
+                    ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Return the conversion of MSG by a copy of MACHINE set up with
+     * SETTINGS.
+     */
+    private String convert(Machine machine, String settings, String msg) {
+        Machine mach = machine.copy();
+        mach.setUp(settings);
+        return mach.convert(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Machine loaded = roundTrip(new Machine(UPPER, 5, 3, allRotor1));
+        assertEquals(5, loaded.numRotors());
+        assertEquals(3, loaded.numPawls());
+        assertEquals(26, loaded.alphabet().size());
+        assertEquals(allRotor1.size(), loaded.catalog().size());
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                convert(loaded, SETTING, "FROMHISSHOULDERHIAWATHA"));
+        char[] text = new char[2000];
+        Arrays.fill(text, 'Q');
+        String msg = new String(text);
+        assertEquals(convert(new Machine(UPPER, 5, 3, allRotor1),
+                "* C GAMMA VI VII VIII ZZZZ", msg),
+                convert(loaded, "* C GAMMA VI VII VIII ZZZZ", msg));
+    }
+
+    @Test
+    public void testListedAlphabet() throws IOException {
+        ArrayList<Character> chars = new ArrayList<>();
+        for (char ch : "QWERTY".toCharArray()) {
+            chars.add(ch);
+        }
+        Alphabet alpha = new MyAlphabet(chars);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(QW) (ER) (TY)",
+                alpha)));
+        rotors.add(new MovingRotor("M", new Permutation("(QWERTY)", alpha),
+                "EY"));
+        Machine loaded = roundTrip(new Machine(alpha, 2, 1, rotors));
+        assertEquals('T', loaded.alphabet().toChar(4));
+        assertEquals(convert(new Machine(alpha, 2, 1, rotors), "* R M W",
+                "QQWWEERRTTYY"),
+                convert(loaded, "* R M W", "QQWWEERRTTYY"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadMagic() {
+        CompiledConfig.load(ByteBuffer.wrap(new byte[64]));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTruncated() {
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        buf.putInt(CompiledConfig.MAGIC).putInt(CompiledConfig.VERSION);
+        CompiledConfig.load(buf.flip());
+    }
+}
@@ -0,0 +1,41 @@
+package enigma;
+
+/**
+ * The ways a machine can compute its substitutions.  No one way is best
+ * for every configuration, so a Machine picks among them by estimating
+ * their costs from its alphabet size, its rotors, the length of each
+ * conversion and the memory available (see Machine.engine), and a
+ * KeystreamCache switches to KEYSTREAM for settings lines that recur
+ * often enough to pay for their tables.
+ *
+ * @author Wendi Zhang
+ */
+public enum Engine {
+
+    /**
+     * Each rotor's wiring applied by index arithmetic.  Needs no tables,
+     * so it is used for alphabets too large to tabulate.
+     */
+    ARITHMETIC,
+
+    /**
+     * Each rotor's substitution at each of its settings looked up in a
+     * precomputed table, one lookup per rotor pass.  Used for short
+     * conversions, which would not repay composing the rotors.
+     */
+    ROTOR_TABLES,
+
+    /**
+     * All rotors but the rightmost composed into one table, which is
+     * brought up to date as they move, so that each character takes
+     * three lookups.  Used for long conversions.
+     */
+    COMPOSED,
+
+    /**
+     * The whole substitution at each position of a message tabulated
+     * for its settings line, so that each character takes one lookup.
+     * Used by a KeystreamCache for settings lines that recur.
+     */
+    KEYSTREAM
+}
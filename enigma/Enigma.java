@@ -0,0 +1,279 @@
+package enigma;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * An Enigma cipher for use as a library: a machine with a fixed rotor
+ * choice, initial setting and plugboard, which converts text passed to
+ * it and can be reset to its initial state.  Ciphers are made by a
+ * Builder:
+ * <pre>
+ *   Enigma cipher = Enigma.builder().config(Paths.get("default.conf"))
+ *           .rotors("B", "BETA", "III", "IV", "I").setting("AXLE")
+ *           .plugboard("(HQ) (EX) (IP) (TR) (BY)").build();
+ *   String secret = cipher.convert("FROMHISSHOULDER");
+ * </pre>
+ * All errors, whether in the configuration, the settings, or the text,
+ * are reported by throwing an EnigmaException.  A cipher is not safe
+ * for use by several threads at once; give each thread its own copy.
+ *
+ * @author Wendi Zhang
+ */
+public final class Enigma {
+
+    /**
+     * Return a new Builder, with no configuration or settings.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A cipher converting with MACHINE, which is set up.
+     */
+    private Enigma(Machine machine) {
+        _machine = machine;
+    }
+
+    /**
+     * Return the conversion of MSG, all of whose characters must be in
+     * the alphabet, continuing from where the last conversion stopped.
+     */
+    public String convert(String msg) {
+        return _machine.convert(msg);
+    }
+
+    /**
+     * Store the conversion of the LEN characters of IN starting at OFF
+     * into OUT starting at OUTOFF, continuing from where the last
+     * conversion stopped.  IN and OUT may be the same array.
+     */
+    public void convert(char[] in, int off, int len, char[] out,
+                        int outOff) {
+        _machine.convert(in, off, len, out, outOff);
+    }
+
+    /**
+     * Convert characters from IN into OUT until IN is empty or OUT is
+     * full, advancing both buffers and continuing from where the last
+     * conversion stopped.
+     */
+    public void convert(CharBuffer in, CharBuffer out) {
+        _machine.convert(in, out);
+    }
+
+    /**
+     * Convert bytes from IN into OUT until IN is empty or OUT is full,
+     * advancing both buffers and continuing from where the last
+     * conversion stopped.  Each byte stands for the ISO-8859-1 (or
+     * ASCII) character with its value, so this requires an alphabet of
+     * such characters.  Either buffer may be direct.
+     */
+    public void convert(ByteBuffer in, ByteBuffer out) {
+        _machine.convert(in, out);
+    }
+
+    /**
+     * Return a reader of the conversion of the text of IN, continuing
+     * from where the last conversion stopped, and treating characters
+     * not in the alphabet according to POLICY.  The reader converts
+     * with me, so I should not be used otherwise while it is in use.
+     */
+    public Reader reader(Reader in, CharPolicy policy) {
+        return new EnigmaReader(in, _machine, policy);
+    }
+
+    /**
+     * Return a writer sending the conversion of the text written to it
+     * to OUT, as for reader.
+     */
+    public Writer writer(Writer out, CharPolicy policy) {
+        return new EnigmaWriter(out, _machine, policy);
+    }
+
+    /**
+     * Return a channel of the conversion of the text of IN, encoded in
+     * CHARSET, as for reader.
+     */
+    public ReadableByteChannel channel(ReadableByteChannel in,
+                                       Charset charset, CharPolicy policy) {
+        return new EnigmaReadableChannel(in, _machine, charset, policy);
+    }
+
+    /**
+     * Return a channel writing the conversion of the text written to it,
+     * encoded in CHARSET, to OUT, as for reader.
+     */
+    public WritableByteChannel channel(WritableByteChannel out,
+                                       Charset charset, CharPolicy policy) {
+        return new EnigmaWritableChannel(out, _machine, charset, policy);
+    }
+
+    /**
+     * Return to my initial state, as built.
+     */
+    public void reset() {
+        _machine.seek(0);
+    }
+
+    /**
+     * Return the number of characters converted since I was built or
+     * reset.
+     */
+    public long position() {
+        return _machine.position();
+    }
+
+    /**
+     * Return the engine my latest conversion used, which I choose for
+     * each conversion by the size of my alphabet, the number of my
+     * rotors, the length of the text and the memory available.
+     */
+    public Engine engine() {
+        return _machine.engine();
+    }
+
+    /**
+     * Return a cipher in the same state as I am, which can then be used
+     * independently of me.
+     */
+    public Enigma copy() {
+        return new Enigma(_machine.copy());
+    }
+
+    /**
+     * A builder of Enigma ciphers.  A configuration, given in any of
+     * the forms below, is read once, and each call of build makes a new
+     * cipher from it with the settings given at the time.
+     */
+    public static final class Builder {
+
+        /**
+         * A builder with no configuration or settings.
+         */
+        private Builder() {
+        }
+
+        /**
+         * Use the configuration in the file PATH, which is read as a
+         * compiled configuration if its name ends in ".enigmab".
+         */
+        public Builder config(Path path) {
+            _prototype = Main.readConfig(path.toString());
+            return this;
+        }
+
+        /**
+         * Use the text configuration read from IN, which is not closed.
+         */
+        public Builder config(InputStream in) {
+            _prototype = Main.readConfig(in);
+            return this;
+        }
+
+        /**
+         * Use the compiled configuration in the remaining bytes of
+         * COMPILED, as written by "java enigma.Main --compile".
+         */
+        public Builder compiledConfig(ByteBuffer compiled) {
+            _prototype = CompiledConfig.load(compiled.duplicate());
+            return this;
+        }
+
+        /**
+         * Use the rotors named NAMES, the reflector first.
+         */
+        public Builder rotors(String... names) {
+            _rotors = String.join(" ", names);
+            return this;
+        }
+
+        /**
+         * Set the rotors (not counting the reflector) initially to the
+         * letters of POSITIONS, leftmost first.
+         */
+        public Builder setting(String positions) {
+            _setting = positions;
+            return this;
+        }
+
+        /**
+         * Use the plugboard given by CYCLES, in the cycle notation of
+         * configuration files, such as "(AB) (CD)".
+         */
+        public Builder plugboard(String cycles) {
+            _plugboard = cycles;
+            return this;
+        }
+
+        /**
+         * Take the rotors, setting and plugboard from SETTINGS, a
+         * settings line in the form Main accepts, such as
+         * "* B BETA III IV I AXLE (HQ) (EX)".
+         */
+        public Builder settings(String settings) {
+            _settingsLine = settings;
+            return this;
+        }
+
+        /**
+         * Return a new cipher with my configuration and settings.
+         */
+        public Enigma build() {
+            if (_prototype == null) {
+                throw error("no configuration given");
+            }
+            String settings = _settingsLine;
+            if (settings == null) {
+                if (_rotors == null || _setting == null) {
+                    throw error("rotors and setting must be given");
+                }
+                settings = "* " + _rotors + " " + _setting + " "
+                        + _plugboard;
+            }
+            Machine machine = _prototype.copy();
+            machine.setUp(settings.trim());
+            return new Enigma(machine);
+        }
+
+        /**
+         * The configured machine, or null.
+         */
+        private Machine _prototype;
+
+        /**
+         * The rotor names, separated by blanks, or null.
+         */
+        private String _rotors;
+
+        /**
+         * The initial rotor setting, or null.
+         */
+        private String _setting;
+
+        /**
+         * The plugboard cycles.
+         */
+        private String _plugboard = "";
+
+        /**
+         * A full settings line, or null.
+         */
+        private String _settingsLine;
+    }
+
+    /**
+     * The machine that does my converting.
+     */
+    private final Machine _machine;
+}
@@ -4,10 +4,11 @@ package enigma;
  * A general-purpose error-reporting exception for this package.  All
  * anticipated user or I/O errors should be reported through this
  * exception, with the message being the error message to be printed.
+ * It is public so that users of Enigma can catch it.
  *
  * @author P. N. Hilfinger
  */
-class EnigmaException extends RuntimeException {
+public class EnigmaException extends RuntimeException {
 
     /**
      * An exception whose getMessage() value is MSG.
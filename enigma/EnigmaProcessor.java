@@ -0,0 +1,416 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A reactive stage converting a stream of text chunks.  Each item is
+ * either a settings line, which sets up a machine from a MachinePool
+ * for the chunks that follow, as the '*' lines of Main's input do, or a
+ * chunk of message text, which is converted by that machine, continuing
+ * from where the previous chunk stopped, and passed on.  Characters not
+ * in the machine's alphabet are treated according to a CharPolicy.
+ *
+ * <p>Each message chunk yields one converted chunk, so demand from my
+ * subscriber is passed straight upstream, and a settings line, which
+ * yields nothing, is replaced by a request for one more item.  Converted
+ * chunks are taken from a shared pool of buffers; a subscriber may give
+ * them back with release once it is done with them.  An error, such as
+ * a bad settings line or a message chunk before any settings line,
+ * cancels my subscription and is passed on to my subscriber.  A
+ * non-positive request does the same, but if it arrives while a chunk is
+ * being delivered, its error is kept until that delivery returns, so
+ * that my subscriber's signals never overlap.
+ *
+ * @author Wendi Zhang
+ */
+class EnigmaProcessor implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    /**
+     * A processor with machines from POOL, treating characters not in
+     * their alphabet according to POLICY.
+     */
+    EnigmaProcessor(MachinePool pool, CharPolicy policy) {
+        _pool = pool;
+        _policy = policy;
+    }
+
+    /**
+     * Give BUF, a chunk delivered by some processor, back to the shared
+     * pool of buffers.  The caller must not use it afterwards.
+     */
+    static void release(CharBuffer buf) {
+        if (buf.capacity() != CHUNK_SIZE || buf.isReadOnly()) {
+            return;
+        }
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            BUFFERS.offer(buf.clear());
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return an empty buffer with room for at least SIZE characters.
+     */
+    private static CharBuffer take(int size) {
+        if (size <= CHUNK_SIZE) {
+            CharBuffer buf = BUFFERS.poll();
+            if (buf != null) {
+                POOLED.decrementAndGet();
+                return buf;
+            }
+        }
+        return CharBuffer.allocate(Math.max(size, CHUNK_SIZE));
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        Throwable terminal;
+        boolean completed;
+        synchronized (this) {
+            if (_downstream != null) {
+                subscriber.onSubscribe(new Inert());
+                subscriber.onError(new IllegalStateException(
+                        "only one subscriber allowed"));
+                return;
+            }
+            _downstream = subscriber;
+            terminal = _terminal;
+            completed = _completed;
+        }
+        subscriber.onSubscribe(new Downstream());
+        if (terminal != null) {
+            subscriber.onError(terminal);
+        } else if (completed) {
+            subscriber.onComplete();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long demand;
+        synchronized (this) {
+            if (_upstream != null || _cancelled) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+            demand = _pendingDemand;
+            _pendingDemand = 0;
+        }
+        if (demand > 0) {
+            subscription.request(demand);
+        }
+    }
+
+    @Override
+    public void onNext(CharBuffer item) {
+        if (_cancelled) {
+            releaseMachine();
+            return;
+        }
+        try {
+            if (isSettings(item)) {
+                setUp(item);
+                _upstream.request(1);
+                return;
+            }
+            if (_converter == null) {
+                throw error("wrong format of input");
+            }
+            int n = item.remaining();
+            CharBuffer out = take(n);
+            item.get(out.array(), 0, n);
+            out.limit(_converter.convert(out.array(), 0, n));
+            emit(out);
+        } catch (EnigmaException excp) {
+            _upstream.cancel();
+            onError(excp);
+        }
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        releaseMachine();
+        Flow.Subscriber<? super CharBuffer> downstream;
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            _terminal = excp;
+            downstream = _downstream;
+        }
+        if (downstream != null) {
+            downstream.onError(excp);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        releaseMachine();
+        Flow.Subscriber<? super CharBuffer> downstream;
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            _completed = true;
+            downstream = _downstream;
+        }
+        if (downstream != null) {
+            downstream.onComplete();
+        }
+    }
+
+    /**
+     * Pass OUT to my subscriber unless I have stopped, and then pass on
+     * any error that arose from a non-positive request meanwhile.
+     */
+    private void emit(CharBuffer out) {
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _emitting = true;
+        }
+        Throwable pending;
+        try {
+            _downstream.onNext(out);
+        } finally {
+            synchronized (this) {
+                _emitting = false;
+                pending = _pendingError;
+                _pendingError = null;
+            }
+        }
+        if (pending != null) {
+            _downstream.onError(pending);
+        }
+    }
+
+    /**
+     * Stop because my subscriber made a non-positive request, passing it
+     * an error now, or once the chunk it is being given has been taken.
+     */
+    private void rejectRequest() {
+        Throwable excp = new IllegalArgumentException(
+                "non-positive request");
+        Flow.Subscription upstream;
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            _terminal = excp;
+            upstream = _upstream;
+            if (_emitting) {
+                _pendingError = excp;
+                excp = null;
+            }
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+        if (excp != null) {
+            _downstream.onError(excp);
+        }
+    }
+
+    /**
+     * Return true iff ITEM holds a settings line.
+     */
+    private static boolean isSettings(CharBuffer item) {
+        int p = item.position();
+        return item.remaining() > 0 && item.get(p) == '*'
+                && (item.remaining() == 1 || item.get(p + 1) == ' '
+                    || MessageReader.isLineEnd(item.get(p + 1)));
+    }
+
+    /**
+     * Set up a machine for the settings line in ITEM, ignoring any line
+     * terminator at its end.
+     */
+    private void setUp(CharBuffer item) {
+        int end = item.limit();
+        while (end > item.position()
+                && MessageReader.isLineEnd(item.get(end - 1))) {
+            end -= 1;
+        }
+        String settings = item.subSequence(0, end - item.position())
+                .toString();
+        releaseMachine();
+        _machine = _pool.acquire(settings);
+        _converter = new TextConverter(_machine, _policy);
+    }
+
+    /**
+     * Give the current machine, if any, back to my pool.  Called only
+     * on the signals from my publisher, which do not overlap, so that a
+     * machine is never released while it is converting.
+     */
+    private void releaseMachine() {
+        if (_machine != null) {
+            _pool.release(_machine);
+            _machine = null;
+            _converter = null;
+        }
+    }
+
+    /**
+     * Add N to the demand of my subscriber.
+     */
+    private void request(long n) {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            upstream = _upstream;
+            if (upstream == null) {
+                _pendingDemand += n;
+                if (_pendingDemand < 0) {
+                    _pendingDemand = Long.MAX_VALUE;
+                }
+                return;
+            }
+        }
+        upstream.request(n);
+    }
+
+    /**
+     * Stop on behalf of my subscriber.  My machine is released on the
+     * next signal from my publisher, if there is one.
+     */
+    private void cancel() {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            upstream = _upstream;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    /**
+     * The subscription of my subscriber.
+     */
+    private final class Downstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                rejectRequest();
+            } else {
+                EnigmaProcessor.this.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            EnigmaProcessor.this.cancel();
+        }
+    }
+
+    /**
+     * The subscription of a subscriber that was turned away.
+     */
+    private static final class Inert implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    /**
+     * Capacity of pooled buffers; larger chunks get buffers of their own.
+     */
+    static final int CHUNK_SIZE = 1 << 13;
+
+    /**
+     * Most buffers kept in the shared pool.
+     */
+    private static final int MAX_POOLED = 1 << 10;
+
+    /**
+     * Buffers released for reuse.
+     */
+    private static final ConcurrentLinkedQueue<CharBuffer> BUFFERS =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of buffers in BUFFERS, or about to be.
+     */
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    /**
+     * Source of my machines.
+     */
+    private final MachinePool _pool;
+
+    /**
+     * Treatment of characters not in the alphabet.
+     */
+    private final CharPolicy _policy;
+
+    /**
+     * My subscriber, or null.
+     */
+    private Flow.Subscriber<? super CharBuffer> _downstream;
+
+    /**
+     * My subscription, or null.
+     */
+    private Flow.Subscription _upstream;
+
+    /**
+     * Demand from my subscriber not yet passed upstream.
+     */
+    private long _pendingDemand;
+
+    /**
+     * True once I have stopped, by completion, error, or cancellation.
+     */
+    private volatile boolean _cancelled;
+
+    /**
+     * True once my publisher has completed.
+     */
+    private boolean _completed;
+
+    /**
+     * The error that stopped me, or null.
+     */
+    private Throwable _terminal;
+
+    /**
+     * True while a chunk is being passed to my subscriber.
+     */
+    private boolean _emitting;
+
+    /**
+     * The error from a non-positive request made while _emitting, not yet
+     * passed on, or null.
+     */
+    private Throwable _pendingError;
+
+    /**
+     * The machine for the current settings line, or null.
+     */
+    private Machine _machine;
+
+    /**
+     * Converter using _machine, or null.
+     */
+    private TextConverter _converter;
+}
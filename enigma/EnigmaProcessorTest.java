@@ -0,0 +1,277 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the EnigmaProcessor class.
+ *
+ * @author Wendi Zhang
+ */
+public class EnigmaProcessorTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING1 =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    private static final String SETTING2 =
+            "* B GAMMA II V VII AAAA (MT) (NF) (WH) (LB)";
+
+    private MachinePool pool =
+            new MachinePool(new Machine(UPPER, 5, 3, allRotor1), 4);
+
+    /**
+     * A publisher's end of a subscription, recording demand.
+     */
+    private static class Upstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        long requested;
+        boolean cancelled;
+    }
+
+    /**
+     * A subscriber recording what it receives.
+     */
+    private static class Collector implements Flow.Subscriber<CharBuffer> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CharBuffer item) {
+            items.add(item.toString());
+            EnigmaProcessor.release(item);
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            error = excp;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        Flow.Subscription subscription;
+        List<String> items = new ArrayList<>();
+        Throwable error;
+        boolean completed;
+    }
+
+    /**
+     * Return a new machine set up with SETTINGS.
+     */
+    private Machine machine(String settings) {
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp(settings);
+        return mach;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConversionAndDemand() {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.PASS);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        collector.subscription.request(2);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        assertEquals(2, upstream.requested);
+        processor.onNext(CharBuffer.wrap(SETTING1));
+        assertEquals(3, upstream.requested);
+        processor.onNext(CharBuffer.wrap("FROM HIS"));
+        processor.onNext(CharBuffer.wrap("SHOULDERHIAWATHA"));
+        processor.onNext(CharBuffer.wrap(SETTING2 + "\n"));
+        collector.subscription.request(1);
+        assertEquals(5, upstream.requested);
+        processor.onNext(CharBuffer.wrap("OVERTHEHILLS"));
+        processor.onComplete();
+        assertEquals(List.of("QVPQ SOK", "OILPUBKJZPISFXDW",
+                machine(SETTING2).convert("OVERTHEHILLS")),
+                collector.items);
+        assertTrue(collector.completed);
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    public void testMessageBeforeSettings() {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.PASS);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        collector.subscription.request(1);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        processor.onNext(CharBuffer.wrap("FROMHIS"));
+        assertTrue(upstream.cancelled);
+        assertTrue(collector.error instanceof EnigmaException);
+        assertTrue(collector.items.isEmpty());
+    }
+
+    @Test
+    public void testCancel() {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.DROP);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        collector.subscription.request(3);
+        processor.onNext(CharBuffer.wrap(SETTING1));
+        processor.onNext(CharBuffer.wrap("FROM HIS"));
+        collector.subscription.cancel();
+        assertTrue(upstream.cancelled);
+        processor.onNext(CharBuffer.wrap("SHOULDER"));
+        assertEquals(List.of("QVPQSOK"), collector.items);
+        assertFalse(collector.completed);
+    }
+
+    @Test
+    public void testNonPositiveRequest() {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.PASS);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        collector.subscription.request(0);
+        assertTrue(upstream.cancelled);
+        assertTrue(collector.error instanceof IllegalArgumentException);
+        collector.error = null;
+        collector.subscription.request(-1);
+        processor.onNext(CharBuffer.wrap(SETTING1));
+        assertNull(collector.error);
+        assertTrue(collector.items.isEmpty());
+    }
+
+    /**
+     * A Collector that checks that its signals do not overlap, and that
+     * calls DURING from inside its first onNext.
+     */
+    private static class Checker extends Collector {
+        Checker(Runnable during) {
+            _during = during;
+        }
+
+        @Override
+        public void onNext(CharBuffer item) {
+            enter();
+            if (items.isEmpty()) {
+                _during.run();
+            }
+            super.onNext(item);
+            _active = false;
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            enter();
+            super.onError(excp);
+            _active = false;
+        }
+
+        /**
+         * Record the start of a signal, noting if another is in progress.
+         */
+        private void enter() {
+            if (_active) {
+                overlapped = true;
+            }
+            _active = true;
+        }
+
+        /**
+         * Called during the first onNext.
+         */
+        private final Runnable _during;
+
+        /**
+         * True while a signal is being handled.
+         */
+        private volatile boolean _active;
+
+        /**
+         * True if two signals overlapped.
+         */
+        volatile boolean overlapped;
+    }
+
+    @Test
+    public void testNonPositiveRequestDuringOnNext() {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.PASS);
+        Checker[] checker = new Checker[1];
+        checker[0] = new Checker(() -> checker[0].subscription.request(0));
+        processor.subscribe(checker[0]);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        checker[0].subscription.request(2);
+        processor.onNext(CharBuffer.wrap(SETTING1));
+        processor.onNext(CharBuffer.wrap("FROMHIS"));
+        assertFalse(checker[0].overlapped);
+        assertTrue(upstream.cancelled);
+        assertTrue(checker[0].error instanceof IllegalArgumentException);
+        processor.onNext(CharBuffer.wrap("SHOULDER"));
+        assertEquals(List.of("QVPQSOK"), checker[0].items);
+    }
+
+    @Test
+    public void testNonPositiveRequestFromOtherThread() throws Exception {
+        EnigmaProcessor processor =
+                new EnigmaProcessor(pool, CharPolicy.PASS);
+        CountDownLatch requested = new CountDownLatch(1);
+        Checker[] checker = new Checker[1];
+        checker[0] = new Checker(() -> {
+            Thread other = new Thread(() -> {
+                checker[0].subscription.request(-1);
+                requested.countDown();
+            });
+            other.start();
+            try {
+                requested.await();
+            } catch (InterruptedException excp) {
+                fail("interrupted");
+            }
+        });
+        processor.subscribe(checker[0]);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        checker[0].subscription.request(2);
+        processor.onNext(CharBuffer.wrap(SETTING1));
+        processor.onNext(CharBuffer.wrap("FROMHIS"));
+        assertFalse(checker[0].overlapped);
+        assertTrue(checker[0].error instanceof IllegalArgumentException);
+        assertTrue(upstream.cancelled);
+    }
+}
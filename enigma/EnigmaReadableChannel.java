@@ -0,0 +1,87 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A channel whose bytes are those of another channel, taken as text and
+ * converted by a machine as they are read.
+ *
+ * @author Wendi Zhang
+ */
+class EnigmaReadableChannel implements ReadableByteChannel {
+
+    /**
+     * A channel converting the text in IN, encoded in CHARSET, by
+     * MACHINE, which is set up for it, treating characters not in the
+     * machine's alphabet according to POLICY.
+     */
+    EnigmaReadableChannel(ReadableByteChannel in, Machine machine,
+                          Charset charset, CharPolicy policy) {
+        _in = in;
+        _converter = new ByteConverter(new TextConverter(machine, policy),
+                charset);
+        _input = ByteBuffer.allocate(ByteConverter.MAX_INPUT);
+        _output = ByteBuffer.allocate(0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        while (!_output.hasRemaining()) {
+            if (_ended) {
+                return -1;
+            }
+            int n = _in.read(_input);
+            _ended = n < 0;
+            _input.flip();
+            _output = _converter.convert(_input, _ended);
+            _input.compact();
+            if (n == 0 && !_output.hasRemaining()) {
+                return 0;
+            }
+        }
+        int n = Math.min(dst.remaining(), _output.remaining());
+        int limit = _output.limit();
+        _output.limit(_output.position() + n);
+        dst.put(_output);
+        _output.limit(limit);
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _in.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /**
+     * The channel of unconverted text.
+     */
+    private final ReadableByteChannel _in;
+
+    /**
+     * Converter of _in's bytes.
+     */
+    private final ByteConverter _converter;
+
+    /**
+     * Bytes read from _in and not yet converted, ready for filling.
+     */
+    private final ByteBuffer _input;
+
+    /**
+     * Converted bytes not yet read from me, ready for reading.
+     */
+    private ByteBuffer _output;
+
+    /**
+     * True once _in has reached its end.
+     */
+    private boolean _ended;
+}
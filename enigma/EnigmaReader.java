@@ -0,0 +1,72 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader whose characters are those of another reader, converted by a
+ * machine as they are read.  Characters are converted in the caller's
+ * buffer, a chunk at a time.
+ *
+ * @author Wendi Zhang
+ */
+class EnigmaReader extends Reader {
+
+    /**
+     * A reader converting the text of IN by MACHINE, which is set up for
+     * it, treating characters not in the machine's alphabet according
+     * to POLICY.
+     */
+    EnigmaReader(Reader in, Machine machine, CharPolicy policy) {
+        _in = in;
+        _converter = new TextConverter(machine, policy);
+    }
+
+    @Override
+    public int read(char[] buf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = _in.read(buf, off, len);
+            if (n < 0) {
+                return -1;
+            }
+            n = _converter.convert(buf, off, n);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(_single, 0, 1);
+        return n < 0 ? -1 : _single[0];
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return _in.ready();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /**
+     * The reader of unconverted text.
+     */
+    private final Reader _in;
+
+    /**
+     * Converter of _in's text.
+     */
+    private final TextConverter _converter;
+
+    /**
+     * Buffer for reading single characters.
+     */
+    private final char[] _single = new char[1];
+}
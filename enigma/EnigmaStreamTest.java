@@ -0,0 +1,129 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for EnigmaReader, EnigmaWriter, and the
+ * Enigma byte channels.
+ *
+ * @author Wendi Zhang
+ */
+public class EnigmaStreamTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    private static final String PLAIN = "From his shoulder Hiawatha";
+
+    private static final String PASSED = "QVPQ SOK OILPUBKJ ZPISFXDW";
+
+    private static final String DROPPED = "QVPQSOKOILPUBKJZPISFXDW";
+
+    /**
+     * Return a new machine set up with SETTING.
+     */
+    private Machine machine() {
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp(SETTING);
+        return mach;
+    }
+
+    /**
+     * Return all the text of IN.
+     */
+    private String readAll(Reader in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buf = new char[5];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) >= 0) {
+            result.append(buf, 0, n);
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReader() throws IOException {
+        assertEquals(PASSED, readAll(new EnigmaReader(
+                new StringReader(PLAIN.toUpperCase()), machine(),
+                CharPolicy.PASS)));
+        assertEquals(DROPPED, readAll(new EnigmaReader(
+                new StringReader(PLAIN.toUpperCase()), machine(),
+                CharPolicy.DROP)));
+        Reader in = new EnigmaReader(new StringReader("  FROM"), machine(),
+                CharPolicy.DROP);
+        assertEquals('Q', in.read());
+        assertEquals("VPQ", readAll(in));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testReject() throws IOException {
+        readAll(new EnigmaReader(new StringReader("FROM HIS"), machine(),
+                CharPolicy.REJECT));
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        StringWriter result = new StringWriter();
+        Writer out = new EnigmaWriter(result, machine(), CharPolicy.DROP);
+        out.write("FROMHIS");
+        out.write(' ');
+        out.write("SHOULDERHIAWATHA".toCharArray(), 0, 16);
+        out.close();
+        assertEquals(DROPPED, result.toString());
+    }
+
+    @Test
+    public void testChannels() throws IOException {
+        String plain = "\u00e9" + PLAIN.toUpperCase() + "\u00e9";
+        byte[] bytes = plain.getBytes(StandardCharsets.UTF_8);
+        ReadableByteChannel in = new EnigmaReadableChannel(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                machine(), StandardCharsets.UTF_8, CharPolicy.PASS);
+        ByteBuffer buf = ByteBuffer.allocate(100);
+        while (in.read(buf) >= 0) {
+            continue;
+        }
+        String expected = "\u00e9" + PASSED + "\u00e9";
+        assertEquals(expected, new String(buf.array(), 0, buf.position(),
+                StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        WritableByteChannel out = new EnigmaWritableChannel(
+                Channels.newChannel(result), machine(),
+                StandardCharsets.UTF_8, CharPolicy.PASS);
+        for (byte b : bytes) {
+            out.write(ByteBuffer.wrap(new byte[] { b }));
+        }
+        out.close();
+        assertEquals(expected, result.toString(StandardCharsets.UTF_8));
+    }
+}
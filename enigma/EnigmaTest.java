@@ -0,0 +1,118 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the Enigma class.
+ *
+ * @author Wendi Zhang
+ */
+public class EnigmaTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String CONFIG = String.join("\n",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ", " 5 3",
+            " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+            " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+            " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
+            " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+            " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+            "   (RX) (SZ) (TV)", "");
+
+    /**
+     * Return a builder configured with CONFIG.
+     */
+    private Enigma.Builder configured() {
+        return Enigma.builder().config(new ByteArrayInputStream(
+                CONFIG.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testBuildAndReset() {
+        Enigma cipher = configured().rotors("B", "BETA", "III", "IV", "I")
+                .setting("AXLE").plugboard("(HQ) (EX) (IP) (TR) (BY)")
+                .build();
+        assertEquals("QVPQSOKOILPUBKJ", cipher.convert("FROMHISSHOULDER"));
+        assertEquals(15, cipher.position());
+        assertEquals(Engine.COMPOSED, cipher.engine());
+        Enigma copy = cipher.copy();
+        assertEquals("ZPISFXDW", cipher.convert("HIAWATHA"));
+        assertEquals("ZPISFXDW", copy.convert("HIAWATHA"));
+        cipher.reset();
+        assertEquals(0, cipher.position());
+        char[] buf = "FROMHISSHOULDER".toCharArray();
+        cipher.convert(buf, 0, buf.length, buf, 0);
+        assertEquals("QVPQSOKOILPUBKJ", new String(buf));
+        Enigma same = configured()
+                .settings("* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)")
+                .build();
+        assertEquals("QVPQSOKOILPUBKJ", same.convert("FROMHISSHOULDER"));
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        Enigma cipher = configured().rotors("B", "BETA", "III", "IV", "I")
+                .setting("AXLE").plugboard("(HQ) (EX) (IP) (TR) (BY)")
+                .build();
+        StringWriter result = new StringWriter();
+        Writer out = cipher.writer(result, CharPolicy.PASS);
+        out.write("FROM HIS SHOULDER");
+        out.flush();
+        assertEquals("QVPQ SOK OILPUBKJ", result.toString());
+    }
+
+    @Test
+    public void testCompiled() throws IOException {
+        File file = File.createTempFile("enigma", CompiledConfig.EXTENSION);
+        try {
+            CompiledConfig.compile(new Machine(UPPER, 5, 3, allRotor1),
+                    file.getPath());
+            Enigma fromPath = Enigma.builder().config(file.toPath())
+                    .rotors("B", "BETA", "III", "IV", "I").setting("AXLE")
+                    .plugboard("(HQ) (EX) (IP) (TR) (BY)").build();
+            assertEquals("QVPQSOKOILPUBKJ",
+                    fromPath.convert("FROMHISSHOULDER"));
+            Enigma fromBytes = Enigma.builder().compiledConfig(
+                    ByteBuffer.wrap(Files.readAllBytes(file.toPath())))
+                    .settings("* B BETA III IV I AXLE").build();
+            assertEquals(15, fromBytes.convert("FROMHISSHOULDER").length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingConfig() {
+        Enigma.builder().rotors("B", "BETA", "III", "IV", "I")
+                .setting("AXLE").build();
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSetting() {
+        configured().rotors("B", "BETA", "III", "I").setting("AXL").build();
+    }
+}
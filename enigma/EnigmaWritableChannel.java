@@ -0,0 +1,84 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A channel that converts the text written to it by a machine and
+ * writes the result to another channel.  All bytes written are
+ * consumed, except that the bytes of a character split between writes
+ * are held until its last byte arrives.  Closing me writes out anything
+ * held and closes the other channel.
+ *
+ * @author Wendi Zhang
+ */
+class EnigmaWritableChannel implements WritableByteChannel {
+
+    /**
+     * A channel writing the conversion by MACHINE, which is set up for
+     * it, of text encoded in CHARSET to OUT, treating characters not in
+     * the machine's alphabet according to POLICY.
+     */
+    EnigmaWritableChannel(WritableByteChannel out, Machine machine,
+                          Charset charset, CharPolicy policy) {
+        _out = out;
+        _converter = new ByteConverter(new TextConverter(machine, policy),
+                charset);
+        _input = ByteBuffer.allocate(ByteConverter.MAX_INPUT);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int n = src.remaining();
+        while (src.hasRemaining()) {
+            int k = Math.min(src.remaining(), _input.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + k);
+            _input.put(src);
+            src.limit(limit);
+            drain(false);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _out.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain(true);
+        _out.close();
+    }
+
+    /**
+     * Convert the bytes in _input and write them to _out, holding back
+     * an incomplete character at the end unless ENDOFINPUT.
+     */
+    private void drain(boolean endOfInput) throws IOException {
+        _input.flip();
+        ByteBuffer output = _converter.convert(_input, endOfInput);
+        _input.compact();
+        while (output.hasRemaining()) {
+            _out.write(output);
+        }
+    }
+
+    /**
+     * Destination of converted text.
+     */
+    private final WritableByteChannel _out;
+
+    /**
+     * Converter of the bytes written to me.
+     */
+    private final ByteConverter _converter;
+
+    /**
+     * Bytes written to me and not yet converted, ready for filling.
+     */
+    private final ByteBuffer _input;
+}
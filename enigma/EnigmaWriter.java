@@ -0,0 +1,93 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer that converts the text written to it by a machine and writes
+ * the result to another writer.  Text is copied into a fixed-size
+ * buffer and converted there, a chunk at a time, so the caller's
+ * buffers are never modified.
+ *
+ * @author Wendi Zhang
+ */
+class EnigmaWriter extends Writer {
+
+    /**
+     * A writer sending the conversion by MACHINE, which is set up for
+     * it, of the text written to it to OUT, treating characters not in
+     * the machine's alphabet according to POLICY.
+     */
+    EnigmaWriter(Writer out, Machine machine, CharPolicy policy) {
+        _out = out;
+        _converter = new TextConverter(machine, policy);
+    }
+
+    @Override
+    public void write(char[] buf, int off, int len) throws IOException {
+        while (len > 0) {
+            int k = Math.min(len, _buf.length);
+            System.arraycopy(buf, off, _buf, 0, k);
+            writeBuffer(k);
+            off += k;
+            len -= k;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int k = Math.min(len, _buf.length);
+            str.getChars(off, off + k, _buf, 0);
+            writeBuffer(k);
+            off += k;
+            len -= k;
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        _buf[0] = (char) c;
+        writeBuffer(1);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    /**
+     * Convert the first LEN characters of _buf and write them to _out.
+     */
+    private void writeBuffer(int len) throws IOException {
+        int n = _converter.convert(_buf, 0, len);
+        if (n > 0) {
+            _out.write(_buf, 0, n);
+        }
+    }
+
+    /**
+     * Size of my conversion buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * The writer of converted text.
+     */
+    private final Writer _out;
+
+    /**
+     * Converter of the text written to me.
+     */
+    private final TextConverter _converter;
+
+    /**
+     * Conversion buffer.
+     */
+    private final char[] _buf = new char[BUFFER_SIZE];
+}
@@ -15,4 +15,11 @@ class FixedRotor extends Rotor {
     FixedRotor(String name, Permutation perm) {
         super(name, perm);
     }
+
+    /**
+     * A non-moving rotor described by SPEC.
+     */
+    FixedRotor(RotorSpec spec) {
+        super(spec);
+    }
 }
@@ -0,0 +1,272 @@
+package enigma;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * The framed protocol between Client and Server.  Every frame is a type
+ * byte, a four-byte big-endian payload length, and the payload.  A
+ * client sends a CONFIG frame naming its configuration file, its input
+ * as DATA frames, and an END frame.  The server answers with the output
+ * as DATA frames, an ERROR frame if the input had an error, and an EXIT
+ * frame whose one-byte payload is the exit code of the equivalent run
+ * of Main.
+ *
+ * @author Wendi Zhang
+ */
+final class Frames {
+
+    /**
+     * Frame types.
+     */
+    static final byte CONFIG = 'C', DATA = 'D', END = 'Z', ERROR = 'E',
+            EXIT = 'X';
+
+    /**
+     * Largest payload of a DATA frame that this side sends.
+     */
+    static final int MAX_DATA = 1 << 16;
+
+    /**
+     * Largest payload of any frame either side accepts.
+     */
+    static final int MAX_PAYLOAD = 1 << 20;
+
+    /**
+     * Not instantiable.
+     */
+    private Frames() {
+    }
+
+    /**
+     * Return the address denoted by SPEC: a port number on the loopback
+     * interface if SPEC is all digits, and otherwise the path of a Unix
+     * domain socket.
+     */
+    static SocketAddress address(String spec) {
+        if (spec.matches("[0-9]+")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(spec));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /**
+     * Return a new connection to the server at ADDRESS.
+     */
+    static SocketChannel connect(SocketAddress address) {
+        try {
+            SocketChannel channel =
+                    address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                    : SocketChannel.open();
+            channel.connect(address);
+            return channel;
+        } catch (IOException excp) {
+            throw error("could not connect to %s", address);
+        }
+    }
+
+    /**
+     * Send a frame of type TYPE whose payload is the text TEXT to OUT.
+     */
+    static void write(WritableByteChannel out, byte type, String text)
+        throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        write(out, type, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Send a frame of type TYPE whose payload is the remaining bytes of
+     * PAYLOAD to OUT.
+     */
+    static void write(WritableByteChannel out, byte type, ByteBuffer payload)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(type).putInt(payload.remaining()).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+        while (payload.hasRemaining()) {
+            out.write(payload);
+        }
+    }
+
+    /**
+     * Read the header of the next frame from IN into HEADER, which must
+     * have room for HEADER_SIZE bytes, and return its type, or -1 at the
+     * end of IN.  The payload length is left in HEADER.getInt(1).
+     */
+    static int readHeader(ReadableByteChannel in, ByteBuffer header)
+        throws IOException {
+        header.clear().limit(HEADER_SIZE);
+        if (!readFully(in, header)) {
+            return -1;
+        }
+        int length = header.getInt(1);
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("bad frame length");
+        }
+        return header.get(0);
+    }
+
+    /**
+     * Read the LENGTH-byte payload of a frame from IN and return it as
+     * text.
+     */
+    static String readText(ReadableByteChannel in, int length)
+        throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(in, payload)) {
+            throw new IOException("truncated frame");
+        }
+        return new String(payload.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fill BUF from IN.  Return false if IN ends before any byte is
+     * read, and throw an exception if it ends part way.
+     */
+    static boolean readFully(ReadableByteChannel in, ByteBuffer buf)
+        throws IOException {
+        int start = buf.position();
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0) {
+                if (buf.position() == start) {
+                    return false;
+                }
+                throw new IOException("truncated frame");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A channel reading the payloads of the DATA frames from a
+     * connection, up to an END frame.
+     */
+    static final class Input implements ReadableByteChannel {
+
+        /**
+         * Input from the frames arriving on IN.
+         */
+        Input(ReadableByteChannel in) {
+            _in = in;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            while (_left == 0) {
+                if (_ended) {
+                    return -1;
+                }
+                int type = readHeader(_in, _header);
+                if (type == END || type < 0) {
+                    _ended = true;
+                } else if (type == DATA) {
+                    _left = _header.getInt(1);
+                } else {
+                    throw new IOException("unexpected frame");
+                }
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > _left) {
+                dst.limit(dst.position() + _left);
+            }
+            int n = _in.read(dst);
+            dst.limit(limit);
+            if (n < 0) {
+                throw new IOException("truncated frame");
+            }
+            _left -= n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _in.isOpen();
+        }
+
+        @Override
+        public void close() {
+            _ended = true;
+        }
+
+        /**
+         * The connection.
+         */
+        private final ReadableByteChannel _in;
+
+        /**
+         * Buffer for frame headers.
+         */
+        private final ByteBuffer _header = ByteBuffer.allocate(HEADER_SIZE);
+
+        /**
+         * Bytes of the current DATA frame not yet read.
+         */
+        private int _left;
+
+        /**
+         * True once the END frame has been read.
+         */
+        private boolean _ended;
+    }
+
+    /**
+     * A channel sending what is written to it as DATA frames.
+     */
+    static final class Output implements WritableByteChannel {
+
+        /**
+         * Output as frames sent on OUT.
+         */
+        Output(WritableByteChannel out) {
+            _out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = src.remaining();
+            while (src.hasRemaining()) {
+                ByteBuffer piece = src.slice();
+                if (piece.remaining() > MAX_DATA) {
+                    piece.limit(MAX_DATA);
+                }
+                src.position(src.position() + piece.remaining());
+                Frames.write(_out, DATA, piece);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _out.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * The connection.
+         */
+        private final WritableByteChannel _out;
+    }
+
+    /**
+     * Size of a frame header.
+     */
+    static final int HEADER_SIZE = 5;
+}
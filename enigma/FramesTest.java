@@ -0,0 +1,165 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The suite of all JUnit tests for the Frames class.
+ *
+ * @author Wendi Zhang
+ */
+public class FramesTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /**
+     * Return a channel reading BYTES.
+     */
+    private static ReadableByteChannel reading(byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Return the bytes of a frame header of type TYPE announcing a
+     * payload of LENGTH bytes.
+     */
+    private static byte[] header(byte type, int length) {
+        return ByteBuffer.allocate(Frames.HEADER_SIZE).put(type)
+                .putInt(length).array();
+    }
+
+    /**
+     * Return BYTES framed as DATA frames by an Output, followed by an END
+     * frame.
+     */
+    private static byte[] framed(byte[] bytes) throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        WritableByteChannel out = Channels.newChannel(sent);
+        assertEquals(bytes.length,
+                new Frames.Output(out).write(ByteBuffer.wrap(bytes)));
+        Frames.write(out, Frames.END, ByteBuffer.allocate(0));
+        return sent.toByteArray();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testTextRoundTrip() throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        Frames.write(Channels.newChannel(sent), Frames.CONFIG, "a.conf");
+        ReadableByteChannel in = reading(sent.toByteArray());
+        ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+        assertEquals(Frames.CONFIG, Frames.readHeader(in, header));
+        assertEquals(6, header.getInt(1));
+        assertEquals("a.conf", Frames.readText(in, header.getInt(1)));
+        assertEquals(-1, Frames.readHeader(in, header));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedHeader() throws IOException {
+        byte[] partial = Arrays.copyOf(header(Frames.DATA, 4), 3);
+        Frames.readHeader(reading(partial),
+                ByteBuffer.allocate(Frames.HEADER_SIZE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedPayload() throws IOException {
+        byte[] frame = Arrays.copyOf(header(Frames.CONFIG, 10),
+                Frames.HEADER_SIZE + 4);
+        ReadableByteChannel in = reading(frame);
+        ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+        Frames.readHeader(in, header);
+        Frames.readText(in, header.getInt(1));
+    }
+
+    @Test
+    public void testTruncatedData() throws IOException {
+        byte[] frame = Arrays.copyOf(header(Frames.DATA, 10),
+                Frames.HEADER_SIZE + 4);
+        Frames.Input in = new Frames.Input(reading(frame));
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        assertEquals(4, in.read(buf));
+        try {
+            in.read(buf);
+            fail("truncated DATA frame accepted");
+        } catch (IOException excp) {
+            assertEquals(4, buf.position());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOversizedFrame() throws IOException {
+        Frames.readHeader(reading(header(Frames.DATA,
+                Frames.MAX_PAYLOAD + 1)),
+                ByteBuffer.allocate(Frames.HEADER_SIZE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeLength() throws IOException {
+        Frames.readHeader(reading(header(Frames.DATA, -1)),
+                ByteBuffer.allocate(Frames.HEADER_SIZE));
+    }
+
+    @Test
+    public void testOutputChunking() throws IOException {
+        byte[] data = new byte[2 * Frames.MAX_DATA + 10];
+        new Random(7).nextBytes(data);
+        ReadableByteChannel in = reading(framed(data));
+        ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+        int[] sizes = { Frames.MAX_DATA, Frames.MAX_DATA, 10 };
+        int start = 0;
+        for (int size : sizes) {
+            assertEquals(Frames.DATA, Frames.readHeader(in, header));
+            assertEquals(size, header.getInt(1));
+            ByteBuffer payload = ByteBuffer.allocate(size);
+            assertTrue(Frames.readFully(in, payload));
+            assertArrayEquals(Arrays.copyOfRange(data, start, start + size),
+                    payload.array());
+            start += size;
+        }
+        assertEquals(Frames.END, Frames.readHeader(in, header));
+        assertEquals(0, header.getInt(1));
+        assertEquals(-1, Frames.readHeader(in, header));
+    }
+
+    @Test
+    public void testInputAcrossFrames() throws IOException {
+        byte[] data = new byte[3 * Frames.MAX_DATA + 1234];
+        new Random(11).nextBytes(data);
+        Frames.Input in = new Frames.Input(reading(framed(data)));
+        ByteBuffer buf = ByteBuffer.allocate(1000);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read(buf.clear())) >= 0) {
+            assertTrue(n <= 1000);
+            received.write(buf.array(), 0, n);
+        }
+        assertArrayEquals(data, received.toByteArray());
+        assertEquals(-1, in.read(buf.clear()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInputRejectsOtherFrames() throws IOException {
+        Frames.Input in = new Frames.Input(reading(header(Frames.EXIT, 0)));
+        in.read(ByteBuffer.allocate(16));
+    }
+}
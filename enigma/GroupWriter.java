@@ -0,0 +1,70 @@
+package enigma;
+
+/**
+ * A writer of converted message lines.  The characters of each line are
+ * written in groups of five, each group followed by a space, except
+ * that the last group may have fewer characters and then is not
+ * followed by a space.
+ *
+ * @author Wendi Zhang
+ */
+abstract class GroupWriter {
+
+    /**
+     * Return the number of characters written for a message line of
+     * LETTERS letters, including its line separator.
+     */
+    static long lineLength(long letters) {
+        return letters + letters / GROUP_SIZE + LINE_SEPARATOR.length();
+    }
+
+    /**
+     * Write the LEN characters of BUF starting at OFF as the next
+     * characters of the current line.
+     */
+    void write(char[] buf, int off, int len) {
+        for (int i = 0; i < len; i += 1) {
+            put(buf[off + i]);
+            _group += 1;
+            if (_group == GROUP_SIZE) {
+                put(' ');
+                _group = 0;
+            }
+        }
+    }
+
+    /**
+     * End the current line.
+     */
+    void endLine() {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            put(LINE_SEPARATOR.charAt(i));
+        }
+        _group = 0;
+    }
+
+    /**
+     * Write out everything written to me so far.
+     */
+    abstract void flush();
+
+    /**
+     * Write C to the output.
+     */
+    abstract void put(char c);
+
+    /**
+     * Number of characters in a group.
+     */
+    static final int GROUP_SIZE = 5;
+
+    /**
+     * What ends a line of output.
+     */
+    static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Number of characters in the current group so far.
+     */
+    private int _group;
+}
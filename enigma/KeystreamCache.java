@@ -0,0 +1,405 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A cache of keystreams for settings lines that recur across messages.
+ * The keystream of a settings line is, for each position in a message,
+ * the full substitution the machine performs at that position, so that
+ * converting a message under a cached setting takes one table lookup
+ * per character and no stepping.  Keystreams are built lazily, as far
+ * as the longest message sent with their setting, and are evicted least
+ * recently used first to keep the tables within a memory budget.  An
+ * evicted keystream gives up its tables at once, and messages still
+ * being converted with it continue by direct conversion, so that the
+ * budget bounds the memory the tables actually take.
+ * Building a table costs about as much as converting a character once
+ * for every character of the alphabet, so a settings line's keystream
+ * is built only once the line has been seen often enough to repay it
+ * (see Machine.keystreamBreakEven), and never on its first sighting,
+ * since most lines are not repeated; until then its messages are
+ * converted directly.  Alphabets of more than 256 characters are never
+ * tabulated.
+ *
+ * @author Wendi Zhang
+ */
+class KeystreamCache {
+
+    /**
+     * A cache of keystreams for copies of MACHINE, a machine as returned
+     * by Main.readConfig, whose tables occupy at most about BUDGET
+     * bytes in all.
+     */
+    KeystreamCache(Machine machine, long budget) {
+        this(machine, budget, 0);
+    }
+
+    /**
+     * A cache as above that tabulates the keystream of a settings line
+     * from its ADMITAFTER-th sighting on, or, if ADMITAFTER is 0, from
+     * when doing so pays.
+     */
+    KeystreamCache(Machine machine, long budget, int admitAfter) {
+        _prototype = machine.copy();
+        _budget = budget;
+        _admitAfter = admitAfter;
+        int n = machine.alphabet().size();
+        _tableBytes = n <= MAX_TABLE_SIZE ? n + TABLE_OVERHEAD : -1;
+    }
+
+    /**
+     * Return a converter for a message sent with the settings line
+     * SETTINGS, as for Machine.setUp, starting at the first character.
+     */
+    Message start(String settings) {
+        Keystream stream = _streams.get(settings);
+        if (stream == null) {
+            Machine mach = _prototype.copy();
+            mach.setUp(settings);
+            stream = new Keystream(this, mach,
+                    _admitAfter > 0 ? _admitAfter
+                    : Math.max(MIN_SIGHTINGS, mach.keystreamBreakEven()));
+            _streams.put(settings, stream);
+            if (_streams.size() > MAX_STREAMS) {
+                Iterator<Keystream> lru = _streams.values().iterator();
+                Keystream victim = lru.next();
+                lru.remove();
+                drop(victim);
+            }
+        } else {
+            stream._sightings += 1;
+        }
+        if (stream.admitted() && stream._length > 0) {
+            _hits += 1;
+        } else {
+            _misses += 1;
+        }
+        return new Message(stream);
+    }
+
+    /**
+     * Return a converter for a message converted by MACHINE, which is
+     * set up for it, bypassing any cache.
+     */
+    static Message direct(Machine machine) {
+        return new Message(machine);
+    }
+
+    /**
+     * Return the number of calls to start whose message starts on a
+     * keystream table already built.  Repeated sightings of a settings
+     * line not yet admitted, whose messages are converted directly, do
+     * not count.
+     */
+    long hits() {
+        return _hits;
+    }
+
+    /**
+     * Return the number of calls to start that did not.
+     */
+    long misses() {
+        return _misses;
+    }
+
+    /**
+     * Return the approximate number of bytes taken by cached tables.
+     */
+    long bytes() {
+        return _bytes;
+    }
+
+    /**
+     * Account for one more table of STREAM, evicting the least recently
+     * used other keystreams as needed to stay within my budget.  Return
+     * false, evicting nothing, if the table cannot fit.
+     */
+    private boolean reserve(Keystream stream) {
+        if (_tableBytes < 0 || stream._evicted
+                || _tableBytes + stream.bytes() > _budget) {
+            return false;
+        }
+        Iterator<Keystream> lru = _streams.values().iterator();
+        while (_bytes + _tableBytes > _budget) {
+            Keystream victim = lru.next();
+            if (victim != stream) {
+                lru.remove();
+                drop(victim);
+            }
+        }
+        _bytes += _tableBytes;
+        return true;
+    }
+
+    /**
+     * Account for STREAM, just removed from _streams, and discard its
+     * tables.
+     */
+    private void drop(Keystream stream) {
+        stream._evicted = true;
+        _bytes -= stream.bytes();
+        stream._tables = null;
+        stream._length = 0;
+    }
+
+    /**
+     * The substitution tables for one settings line.
+     */
+    private static final class Keystream {
+
+        /**
+         * An empty keystream in CACHE whose positions are those of
+         * MACHINE, freshly set up, and which is used from its
+         * ADMITAFTER-th sighting on.
+         */
+        Keystream(KeystreamCache cache, Machine machine, long admitAfter) {
+            _cache = cache;
+            _start = machine.copy();
+            _machine = machine;
+            _tables = new byte[INITIAL_LENGTH][];
+            _admitAfter = admitAfter;
+            _sightings = 1;
+        }
+
+        /**
+         * Return true iff my settings line has been seen often enough
+         * for me to be used.
+         */
+        boolean admitted() {
+            return _sightings >= _admitAfter;
+        }
+
+        /**
+         * Return the substitution table for position POSN, or null if it
+         * is not built and cannot be built without exceeding the budget
+         * of my cache.  Positions are built in order, so POSN may exceed
+         * the last built position by at most one.
+         */
+        byte[] table(long posn) {
+            if (posn < _length) {
+                return _tables[(int) posn];
+            }
+            if (posn >= Integer.MAX_VALUE || !_cache.reserve(this)) {
+                return null;
+            }
+            if (_length == _tables.length) {
+                byte[][] tables = new byte[2 * _length][];
+                System.arraycopy(_tables, 0, tables, 0, _length);
+                _tables = tables;
+            }
+            byte[] table = new byte[_machine.alphabet().size()];
+            _machine.substitutions(table);
+            _tables[_length] = table;
+            _length += 1;
+            return table;
+        }
+
+        /**
+         * Return the approximate number of bytes in my tables.
+         */
+        long bytes() {
+            return (long) _length * _cache._tableBytes;
+        }
+
+        /**
+         * The cache holding me.
+         */
+        private final KeystreamCache _cache;
+
+        /**
+         * A machine as it was set up for my settings line.
+         */
+        private final Machine _start;
+
+        /**
+         * A machine at position _length of my settings line.
+         */
+        private final Machine _machine;
+
+        /**
+         * The tables of positions 0 .. _length-1, followed by room for
+         * more, or null once I have been evicted.
+         */
+        private byte[][] _tables;
+
+        /**
+         * The number of tables built.
+         */
+        private int _length;
+
+        /**
+         * True once my cache has dropped me, after which I do not grow.
+         */
+        private boolean _evicted;
+
+        /**
+         * The sighting of my settings line from which I am used.
+         */
+        private final long _admitAfter;
+
+        /**
+         * The number of times my settings line has been seen.
+         */
+        private long _sightings;
+    }
+
+    /**
+     * The conversion of one message, which may arrive in pieces.
+     */
+    static final class Message {
+
+        /**
+         * A message converted by the keystream STREAM.
+         */
+        private Message(Keystream stream) {
+            _stream = stream;
+            _alphabet = stream._start.alphabet();
+            if (!stream.admitted()) {
+                _machine = stream._start.copy();
+            }
+        }
+
+        /**
+         * A message converted by MACHINE alone.
+         */
+        private Message(Machine machine) {
+            _stream = null;
+            _alphabet = machine.alphabet();
+            _machine = machine;
+        }
+
+        /**
+         * Store the encoding/decoding of the LEN characters of IN
+         * starting at OFF into OUT starting at OUTOFF, continuing from
+         * where the previous conversion of this message stopped.  IN and
+         * OUT may be the same array.
+         */
+        void convert(char[] in, int off, int len, char[] out, int outOff) {
+            Alphabet alpha = _alphabet;
+            int i = 0;
+            for (; i < len && _machine == null; i += 1) {
+                int c = alpha.toInt(in[off + i]);
+                byte[] table = _stream.table(_position);
+                if (table == null) {
+                    _machine = _stream._start.copy();
+                    _machine.seek(_position);
+                    break;
+                }
+                out[outOff + i] = alpha.toChar(table[c] & 0xff);
+                _position += 1;
+            }
+            if (_machine != null) {
+                _machine.convert(in, off + i, len - i, out, outOff + i);
+                _position += len - i;
+            }
+        }
+
+        /**
+         * Return the engine of my latest conversion.
+         */
+        Engine engine() {
+            return _machine == null ? Engine.KEYSTREAM : _machine.engine();
+        }
+
+        /**
+         * Return the encoding/decoding of MSG, continuing from where the
+         * previous conversion of this message stopped.
+         */
+        String convert(String msg) {
+            char[] buf = msg.toCharArray();
+            convert(buf, 0, buf.length, buf, 0);
+            return new String(buf);
+        }
+
+        /**
+         * The keystream of my settings line, or null.
+         */
+        private final Keystream _stream;
+
+        /**
+         * The alphabet of my machine.
+         */
+        private final Alphabet _alphabet;
+
+        /**
+         * The number of characters converted so far.
+         */
+        private long _position;
+
+        /**
+         * A machine converting me directly, from the start if my
+         * keystream is not yet in use, or once it has run out, or null.
+         */
+        private Machine _machine;
+    }
+
+    /**
+     * Alphabets of at most this many characters are tabulated.
+     */
+    static final int MAX_TABLE_SIZE = 256;
+
+    /**
+     * Approximate bytes of memory used by an array besides its elements.
+     */
+    private static final int TABLE_OVERHEAD = 16;
+
+    /**
+     * Initial capacity of a keystream, in positions.
+     */
+    private static final int INITIAL_LENGTH = 64;
+
+    /**
+     * Fewest sightings of a settings line after which its keystream may
+     * be tabulated when admitting by cost.
+     */
+    static final int MIN_SIGHTINGS = 2;
+
+    /**
+     * Most settings lines remembered at once, so that inputs with very
+     * many different settings do not accumulate machines.
+     */
+    static final int MAX_STREAMS = 1 << 12;
+
+    /**
+     * A budget that suits the command-line program, in bytes.
+     */
+    static final long DEFAULT_BUDGET = 16L << 20;
+
+    /**
+     * A copy of the machine I was created with, unchanged.
+     */
+    private final Machine _prototype;
+
+    /**
+     * Most bytes my tables may take.
+     */
+    private final long _budget;
+
+    /**
+     * The sighting of a settings line from which its keystream is used,
+     * or 0 to decide by cost.
+     */
+    private final int _admitAfter;
+
+    /**
+     * Bytes taken by one table, or -1 if the alphabet is too large.
+     */
+    private final int _tableBytes;
+
+    /**
+     * Keystreams by settings line, least recently used first.
+     */
+    private final LinkedHashMap<String, Keystream> _streams =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Bytes taken by the tables of the keystreams in _streams.
+     */
+    private long _bytes;
+
+    /**
+     * Counts of cache hits and misses in start.
+     */
+    private long _hits, _misses;
+}
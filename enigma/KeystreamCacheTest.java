@@ -0,0 +1,161 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the KeystreamCache class.
+ *
+ * @author Wendi Zhang
+ */
+public class KeystreamCacheTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING1 =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+    private static final String SETTING2 =
+            "* B GAMMA II V VII AAAA (MT) (NF) (WH) (LB)";
+
+    private Machine machine = new Machine(UPPER, 5, 3, allRotor1);
+
+    /**
+     * Return the conversion of MSG by a new machine set up with
+     * SETTINGS.
+     */
+    private String convertDirectly(String settings, String msg) {
+        Machine mach = machine.copy();
+        mach.setUp(settings);
+        return mach.convert(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testHitsAndMisses() {
+        KeystreamCache cache = new KeystreamCache(machine, 1 << 20, 1);
+        KeystreamCache.Message msg = cache.start(SETTING1);
+        assertEquals("QVPQSOKOILPUBKJ", msg.convert("FROMHISSHOULDER"));
+        assertEquals("ZPISFXDW", msg.convert("HIAWATHA"));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                cache.start(SETTING1).convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals(convertDirectly(SETTING2, "OVERTHEHILLS"),
+                cache.start(SETTING2).convert("OVERTHEHILLS"));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(23 * 42 + 12 * 42, cache.bytes());
+    }
+
+    @Test
+    public void testLongerMessageExtendsKeystream() {
+        KeystreamCache cache = new KeystreamCache(machine, 1 << 20, 1);
+        cache.start(SETTING1).convert("FROM");
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                cache.start(SETTING1).convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals(23 * 42, cache.bytes());
+    }
+
+    @Test
+    public void testBudget() {
+        KeystreamCache cache = new KeystreamCache(machine, 100 * 42, 1);
+        char[] text = new char[300];
+        Arrays.fill(text, 'E');
+        String msg = new String(text);
+        String expected = convertDirectly(SETTING1, msg);
+        assertEquals(expected, cache.start(SETTING1).convert(msg));
+        assertEquals(100 * 42, cache.bytes());
+        assertEquals(expected, cache.start(SETTING1).convert(msg));
+        assertEquals(convertDirectly(SETTING2, msg.substring(0, 60)),
+                cache.start(SETTING2).convert(msg.substring(0, 60)));
+        assertEquals(60 * 42, cache.bytes());
+        assertEquals(expected, cache.start(SETTING1).convert(msg));
+        assertEquals(100 * 42, cache.bytes());
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void testEvictionDuringMessage() {
+        KeystreamCache cache = new KeystreamCache(machine, 100 * 42, 1);
+        char[] text = new char[100];
+        Arrays.fill(text, 'E');
+        String msg = new String(text);
+        String expected = convertDirectly(SETTING1, msg + msg);
+        cache.start(SETTING1).convert(msg);
+        KeystreamCache.Message inFlight = cache.start(SETTING1);
+        assertEquals(expected.substring(0, 50),
+                inFlight.convert(msg.substring(0, 50)));
+        assertEquals(Engine.KEYSTREAM, inFlight.engine());
+        cache.start(SETTING2).convert(msg.substring(0, 60));
+        assertEquals(60 * 42, cache.bytes());
+        assertEquals(expected.substring(50),
+                inFlight.convert(msg.substring(50) + msg));
+        assertTrue(inFlight.engine() != Engine.KEYSTREAM);
+        assertEquals(60 * 42, cache.bytes());
+    }
+
+    @Test
+    public void testAdmission() {
+        KeystreamCache cache = new KeystreamCache(machine, 1 << 20);
+        Machine mach = machine.copy();
+        mach.setUp(SETTING1);
+        long admitAfter = mach.keystreamBreakEven();
+        assertTrue(admitAfter > 1);
+        for (long k = 1; k < admitAfter; k += 1) {
+            KeystreamCache.Message msg = cache.start(SETTING1);
+            assertEquals("QVPQSOKOILPUBKJ", msg.convert("FROMHISSHOULDER"));
+            assertEquals(Engine.COMPOSED, msg.engine());
+        }
+        assertEquals(0, cache.bytes());
+        assertEquals(0, cache.hits());
+        KeystreamCache.Message msg = cache.start(SETTING1);
+        assertEquals("QVPQSOKOILPUBKJ", msg.convert("FROMHISSHOULDER"));
+        assertEquals(Engine.KEYSTREAM, msg.engine());
+        assertEquals(15 * 42, cache.bytes());
+        assertEquals(0, cache.hits());
+        assertEquals(admitAfter, cache.misses());
+        cache.start(SETTING1);
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testNoAdmissionOnFirstSighting() {
+        Alphabet ab = new CharacterRange('A', 'B');
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation("(AB)", ab)));
+        rotors.add(new MovingRotor("M", new Permutation("(AB)", ab), "A"));
+        KeystreamCache cache = new KeystreamCache(new Machine(ab, 2, 1,
+                rotors), 1 << 20);
+        KeystreamCache.Message msg = cache.start("* R M A");
+        msg.convert("ABBA");
+        assertEquals(0, cache.bytes());
+        for (int k = 2; k < KeystreamCache.MIN_SIGHTINGS; k += 1) {
+            cache.start("* R M A");
+        }
+        msg = cache.start("* R M A");
+        msg.convert("ABBA");
+        assertEquals(Engine.KEYSTREAM, msg.engine());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSettings() {
+        KeystreamCache cache = new KeystreamCache(machine, 1 << 20);
+        cache.start("* B BETA III IV AXLE");
+    }
+}
@@ -1,8 +1,15 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Collection;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static enigma.EnigmaException.*;
 
@@ -24,14 +31,70 @@ class Machine {
         _numRotors = numRotors;
         _pawls = pawls;
         _alphabet = alpha;
-        _allRotor = new ArrayList<>(allRotors);
-        for (int i = 0; i < _allRotor.size(); i += 1) {
-            Rotor rotor = _allRotor.get(i);
-            String rotorName = rotor.name();
-            _findrotor.put(rotorName, rotor);
+        _catalog = new HashMap<>();
+        for (Rotor rotor : allRotors) {
+            _catalog.put(rotor.name(), rotor.spec());
+        }
+        int n = alpha.size();
+        if (n <= BYTE_VALUES) {
+            _byteIndex = new int[BYTE_VALUES];
+            Arrays.fill(_byteIndex, -1);
+            _indexByte = new byte[n];
+            for (int i = 0; i < n; i += 1) {
+                char c = alpha.toChar(i);
+                if (c >= BYTE_VALUES) {
+                    _byteIndex = null;
+                    _indexByte = null;
+                    break;
+                }
+                _byteIndex[c] = i;
+                _indexByte[i] = (byte) c;
+            }
         }
     }
 
+    /**
+     * A new Enigma machine with the same rotors, settings, plugboard and
+     * position as ORIGINAL, whose rotors move independently of it.
+     */
+    private Machine(Machine original) {
+        _numRotors = original._numRotors;
+        _pawls = original._pawls;
+        _alphabet = original._alphabet;
+        _catalog = original._catalog;
+        _byteIndex = original._byteIndex;
+        _indexByte = original._indexByte;
+        _plugboard = original._plugboard;
+        _slots = original._slots;
+        _tabulated = original._tabulated;
+        _engine = original._engine;
+        if (original._settings != null) {
+            _settings = original._settings.clone();
+        }
+        _startSettings = original._startSettings;
+        _position = original._position;
+        if (original._levels != null) {
+            _levels = new int[original._levels.length][_alphabet.size()];
+        }
+        _staleFrom = 0;
+    }
+
+    /**
+     * Return a copy of me in my current state that can then be used
+     * independently of me.  The copy shares my rotor catalog and
+     * plugboard, so it costs little more than my rotor settings.
+     */
+    Machine copy() {
+        return new Machine(this);
+    }
+
+    /**
+     * Return my alphabet.
+     */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
     /**
      * Return the number of rotor slots I have.
      */
@@ -39,6 +102,13 @@ class Machine {
         return _numRotors;
     }
 
+    /**
+     * Return the specs of all my available rotors.
+     */
+    Collection<RotorSpec> catalog() {
+        return Collections.unmodifiableCollection(_catalog.values());
+    }
+
     /**
      * Return the number pawls (and thus rotating rotors) I have.
      */
@@ -52,23 +122,126 @@ class Machine {
      * Initially, all rotors are set at their 0 setting.
      */
     void insertRotors(String[] rotors) {
-        _rotorsList = new ArrayList<>();
+        RotorSpec[] slots = new RotorSpec[rotors.length];
         for (int i = 0; i < rotors.length; i += 1) {
             String currName = rotors[i];
-            if (_findrotor.containsKey(currName)) {
-                Rotor currRotor = _findrotor.get(currName);
-                _rotorsList.add(currRotor);
+            if (_catalog.containsKey(currName)) {
+                slots[i] = _catalog.get(currName);
             } else {
                 throw error("wrong name of rotor: Rotor name not found");
             }
         }
-        if (!_rotorsList.get(0).reflecting()) {
+        if (!slots[0].reflecting()) {
             throw error("the first rotor should be a reflector");
         }
-        if (_rotorsList.size() != numRotors()) {
+        if (slots.length != numRotors()) {
             throw error("number of rotors does not match"
                     + "number of rotor slots");
         }
+        _slots = slots;
+        _settings = new int[slots.length];
+        _tabulated = tabulate(slots);
+        _levels = null;
+        if (_tabulated) {
+            _levels = new int[slots.length - 1][_alphabet.size()];
+        }
+        markStart();
+        _engine = choose(Long.MAX_VALUE);
+    }
+
+    /**
+     * Build the conversion tables of the rotors in SLOTS, if their
+     * alphabet is small enough and their tables would take at most
+     * 1/TABLE_MEMORY_SHARE of the most memory this JVM may use, and
+     * return true iff the rotors are then tabulated.  The limit depends
+     * only on how the JVM was started, not on how much memory happens
+     * to be free, so a configuration always gets the same engines.
+     */
+    private static boolean tabulate(RotorSpec[] slots) {
+        long needed = 0;
+        for (RotorSpec spec : slots) {
+            long bytes = spec.tableBytes();
+            if (bytes < 0) {
+                return false;
+            }
+            needed += bytes;
+        }
+        if (needed > Runtime.getRuntime().maxMemory() / TABLE_MEMORY_SHARE) {
+            return false;
+        }
+        for (RotorSpec spec : slots) {
+            spec.tabulate();
+        }
+        return true;
+    }
+
+    /**
+     * Return the engine I used for my latest conversion, or, if I have
+     * converted nothing since my rotors were inserted, the one I would
+     * use for a long message.
+     */
+    Engine engine() {
+        return _engine;
+    }
+
+    /**
+     * Return the cheapest engine for converting LEN characters from my
+     * current state.  Costs are in units of one entry of a composed
+     * level (see compose).  Bringing _levels up to date costs one unit
+     * per entry of each stale level, and keeping them up to date as the
+     * second rotor from the right moves costs about one unit per
+     * character; in return, each character takes three rotor passes
+     * rather than one through each rotor each way.  Up-to-date levels
+     * also serve later conversions, so a message already longer than
+     * LEN is expected to go on about as long again.
+     */
+    private Engine choose(long len) {
+        if (!_tabulated) {
+            return Engine.ARITHMETIC;
+        }
+        int last = _slots.length - 1;
+        long saving = (2L * last - 2) * PASS_COST - 1;
+        long stale = (long) _alphabet.size() * (last - _staleFrom);
+        long horizon = Math.max(len, _position);
+        if (saving > 0 && (stale + saving - 1) / saving <= horizon) {
+            return Engine.COMPOSED;
+        }
+        return Engine.ROTOR_TABLES;
+    }
+
+    /**
+     * Return how many times a message must be converted with my
+     * current rotors before tabulating its keystream, as a
+     * KeystreamCache does, costs less than converting it afresh each
+     * time.  A keystream lookup costs about one rotor pass.
+     */
+    long keystreamBreakEven() {
+        long saving = charCost() - PASS_COST;
+        return (tableCost() + saving - 1) / saving;
+    }
+
+    /**
+     * Return the estimated cost, in the units of choose, of converting
+     * one character of a long message with my current rotors.
+     */
+    private long charCost() {
+        long passes = 2 * _slots.length - 1;
+        long cost = STEP_COST + 2 * PASS_COST;
+        if (!_tabulated) {
+            return cost + passes * ARITHMETIC_COST;
+        } else if (choose(Long.MAX_VALUE) == Engine.COMPOSED) {
+            return cost + 3 * PASS_COST + 1;
+        } else {
+            return cost + passes * PASS_COST;
+        }
+    }
+
+    /**
+     * Return the estimated cost, in the units of choose, of one call of
+     * substitutions.
+     */
+    private long tableCost() {
+        return STEP_COST + _alphabet.size() * (charCost() - STEP_COST);
     }
 
     /**
@@ -81,10 +254,296 @@ class Machine {
         if (settingArr.length != numRotors() - 1) {
             throw error("wrong length of setting");
         }
+        int[] settings = new int[_slots.length];
         for (int i = 0; i < settingArr.length; i += 1) {
-            Rotor currRotor = _rotorsList.get(i + 1);
-            currRotor.set(settingArr[i]);
+            settings[i + 1] = _alphabet.toInt(settingArr[i]);
         }
+        _settings = settings;
+        markStart();
+    }
+
+    /**
+     * Insert and set my rotors and plugboard according to the settings
+     * line SETTINGS, which has the form "* REFLECTOR ROTOR ... SETTING
+     * CYCLES", where CYCLES is an optional plugboard in cycle notation.
+     * Over a ByteAlphabet, SETTING and CYCLES give bytes as two hex
+     * digits each, as in "* R F M 0020 (00 FF) (0D 0A)".
+     */
+    void setUp(String settings) {
+        List<String> rotorsName = new ArrayList<>();
+        int mRotors = numRotors();
+        int nPawls = numPawls();
+        int intpos = 0;
+        int countmoving = 0;
+        String[] setArr = settings.split("\\s+");
+        if (!setArr[0].equals("*")) {
+            throw error("wrong setting line format");
+        }
+        RotorSpec reflector =
+                setArr.length > 1 ? _catalog.get(setArr[1]) : null;
+        if (reflector == null || !reflector.reflecting()) {
+            throw error("reflector in wrong place");
+        }
+        for (int i = 1; i < setArr.length; i += 1) {
+            if (_catalog.containsKey(setArr[i])) {
+                rotorsName.add(setArr[i]);
+            } else {
+                intpos = i;
+                break;
+            }
+        }
+        if (rotorsName.size() != mRotors) {
+            throw error("wrong number of rotors");
+        }
+        for (int i = 0; i < rotorsName.size(); i += 1) {
+            if (_catalog.get(rotorsName.get(i)).rotates()) {
+                countmoving += 1;
+            }
+        }
+        if (countmoving != nPawls) {
+            throw error("wrong number of moving rotors");
+        }
+        String setRotor = setArr[intpos];
+        boolean bytes = _alphabet instanceof ByteAlphabet;
+        if (bytes && intpos > 0) {
+            setRotor = ByteAlphabet.decode(setRotor);
+        }
+        if (setRotor.length() != mRotors - 1) {
+            throw error("wrong format of setting");
+        }
+        StringBuilder plugCycles = new StringBuilder();
+        for (int j = intpos + 1; j < setArr.length; j += 1) {
+            plugCycles.append(setArr[j]).append(bytes ? " " : "");
+        }
+        String[] rotors = rotorsName.toArray(new String[rotorsName.size()]);
+        for (int i = 0; i < setRotor.length(); i += 1) {
+            if (!_alphabet.contains(setRotor.charAt(i))) {
+                throw error("wrong initial position");
+            }
+        }
+        if (setArr.length > (mRotors + 2)
+                && setArr[mRotors + 2].charAt(0) != '(') {
+            throw error("wrong format of cycle");
+        }
+        insertRotors(rotors);
+        setRotors(setRotor);
+        if (bytes) {
+            int[] forward = new int[ByteAlphabet.SIZE];
+            int[] inverse = new int[ByteAlphabet.SIZE];
+            ByteAlphabet.readCycles(plugCycles.toString(), forward, inverse);
+            setPlugboard(new Permutation(forward, inverse, _alphabet));
+        } else {
+            setPlugboard(new Permutation(plugCycles.toString(), _alphabet));
+        }
+    }
+
+    /**
+     * Return the current settings of my rotors, in the form accepted by
+     * setRotors.
+     */
+    String settings() {
+        char[] result = new char[_settings.length - 1];
+        for (int i = 1; i < _settings.length; i += 1) {
+            result[i - 1] = _alphabet.toChar(_settings[i]);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Return the number of characters converted since my rotors were
+     * last set.
+     */
+    long position() {
+        return _position;
+    }
+
+    /**
+     * Record the current rotor settings as position 0 for seek.
+     */
+    private void markStart() {
+        _startSettings = _settings.clone();
+        _position = 0;
+        _staleFrom = 0;
+    }
+
+    /**
+     * Put my rotors in the state they would have after converting
+     * POSITION characters since they were last set.
+     */
+    void seek(long position) {
+        if (position < 0) {
+            throw error("negative message position");
+        }
+        if (position < _position) {
+            _settings = _startSettings.clone();
+            _position = 0;
+            _staleFrom = 0;
+        }
+        advance(position - _position);
+    }
+
+    /**
+     * Put my rotors in the state they would have after converting N
+     * more characters, without converting anything.  Works from the
+     * rightmost rotor leftward: the number of times each rotor moves
+     * follows from how many notches of the rotor to its right went by,
+     * plus, with double stepping, how many of its own notches it
+     * pushed itself past.  Falls back to advanceByBlocks when some
+     * rotor that matters has notches at two consecutive settings, or a
+     * rotor in a pawl slot does not rotate.
+     */
+    void advance(long n) {
+        if (n < 0) {
+            throw error("cannot advance a machine backward");
+        }
+        RotorSpec[] slots = _slots;
+        int last = slots.length - 1;
+        int first = slots.length - _pawls;
+        boolean jumpable = true;
+        for (int j = first; j <= last; j += 1) {
+            if (!slots[j].rotates()
+                    || (j > first && slots[j].hasAdjacentNotches())) {
+                jumpable = false;
+            }
+        }
+        if (!jumpable) {
+            advanceByBlocks(n);
+            _position += n;
+            return;
+        }
+        if (first > last) {
+            _position += n;
+            return;
+        }
+        _staleFrom = 0;
+        int depth = last - first;
+        long[][] moves = new long[slots.length][depth + 2];
+        for (int k = 0; k <= depth + 1 && k <= n; k += 1) {
+            moves[last][k] = n - k;
+        }
+        for (int j = last - 1; j >= first; j -= 1) {
+            for (int k = 0; k <= j - first && k <= n; k += 1) {
+                moves[j][k] = movesAt(j, n - k, moves[j + 1][k],
+                        moves[j + 1][k + 1], j == first);
+            }
+        }
+        for (int j = first; j <= last; j += 1) {
+            _settings[j] = offset(j, moves[j][0]);
+        }
+        _position += n;
+    }
+
+    /**
+     * Put my rotors in the state they would have after N more
+     * keypresses, moving them as step does, for when advance cannot
+     * count their moves directly.  The keypresses are taken in blocks
+     * of one revolution of the rightmost rotor.  The state of the pawl
+     * rotors at the start of a block decides their state at its end, so
+     * once a block starts in a state seen before, whole cycles of blocks
+     * are skipped; up to MAX_CYCLE_BLOCKS states are remembered.
+     */
+    private void advanceByBlocks(long n) {
+        _staleFrom = 0;
+        int size = _alphabet.size();
+        int first = _slots.length - _pawls;
+        HashMap<String, Long> seen = new HashMap<>();
+        boolean cycled = false;
+        long remaining = n;
+        while (remaining >= size) {
+            if (!cycled && seen.size() < MAX_CYCLE_BLOCKS) {
+                char[] state = new char[_pawls];
+                for (int j = 0; j < _pawls; j += 1) {
+                    state[j] = (char) _settings[first + j];
+                }
+                Long earlier = seen.put(new String(state), remaining);
+                if (earlier != null) {
+                    remaining %= earlier - remaining;
+                    cycled = true;
+                    continue;
+                }
+            }
+            runKeys(size);
+            remaining -= size;
+        }
+        runKeys(remaining);
+    }
+
+    /**
+     * Move my rotors through N keypresses, as step does, but moving the
+     * rightmost rotor alone through any stretch of keypresses in which
+     * no other rotor can move.
+     */
+    private void runKeys(long n) {
+        RotorSpec[] slots = _slots;
+        int last = slots.length - 1;
+        int first = slots.length - _pawls;
+        while (n > 0) {
+            long quiet = n;
+            for (int j = first + 1; j < last; j += 1) {
+                if (slots[j].notchAt(_settings[j])) {
+                    quiet = 0;
+                }
+            }
+            if (quiet > 0 && first < last) {
+                int distance = slots[last].notchDistance(_settings[last]);
+                if (distance >= 0 && (distance == 0
+                                      || slots[last].rotates())) {
+                    quiet = Math.min(quiet, distance);
+                }
+            }
+            if (quiet == 0) {
+                step();
+                n -= 1;
+            } else {
+                if (first <= last && slots[last].rotates()) {
+                    _settings[last] = offset(last, quiet);
+                }
+                n -= quiet;
+            }
+        }
+    }
+
+    /**
+     * Return how many times the rotor in slot J moves during the next M
+     * keypresses, given that the rotor to its right moves RIGHTMOVES
+     * times during them and PREVRIGHTMOVES times during the first M-1.
+     * LEFTMOST indicates that J is the leftmost rotor with a pawl, so
+     * that its own notches do not move it.
+     */
+    private long movesAt(int j, long m, long rightMoves,
+                         long prevRightMoves, boolean leftmost) {
+        RotorSpec rotor = _slots[j], right = _slots[j + 1];
+        int setting = _settings[j], rightSetting = _settings[j + 1];
+        long triggers = right.notchesPassed(rightSetting, rightMoves);
+        if (leftmost) {
+            return triggers;
+        }
+        if (m >= 1 && rotor.notchAt(setting) && right.notchAt(rightSetting)) {
+            triggers -= 1;
+        }
+        long moves = triggers;
+        while (true) {
+            long next = triggers + rotor.notchesPassed(setting, moves);
+            if (next == moves) {
+                break;
+            }
+            moves = next;
+        }
+        if (m >= 1 && rotor.notchAt(offset(j, moves))
+                && (moves == 0
+                    || !right.notchAt(offset(j + 1, prevRightMoves)))) {
+            moves += 1;
+        }
+        return moves;
+    }
+
+    /**
+     * Return the setting the rotor in slot J would have after moving
+     * MOVES times.
+     */
+    private int offset(int j, long moves) {
+        int size = _alphabet.size();
+        return (int) ((_settings[j] + moves % size) % size);
     }
 
     /**
@@ -100,52 +559,129 @@ class Machine {
      * the machine.
      */
     int convert(int c) {
-        int counter = 0;
-        Rotor[] allrotor = new Rotor[numRotors()];
-        allrotor = _rotorsList.toArray(allrotor);
-        int input = c;
+        step();
+        _position += 1;
+        return substitute(c);
+    }
+
+    /**
+     * Advance the machine one keypress, as convert(int) does, and store
+     * in TABLE[C] the result that convert(C) would have returned for
+     * every C in the range 0..alphabet size - 1.  The alphabet must
+     * have at most 256 characters; entries are unsigned.
+     */
+    void substitutions(byte[] table) {
+        _engine = choose(_alphabet.size());
+        step();
+        _position += 1;
+        int n = _alphabet.size();
+        for (int c = 0; c < n; c += 1) {
+            table[c] = (byte) substitute(c);
+        }
+    }
+
+    /**
+     * Return the conversion of C at my current settings, without
+     * advancing the rotors.
+     */
+    private int substitute(int c) {
+        RotorSpec[] slots = _slots;
+        int[] settings = _settings;
+        int input;
         if (_plugboard != null) {
             input = _plugboard.permute(c);
+        } else {
+            input = slots[0].permutation().wrap(c);
         }
-        Rotor freeMoving = allrotor[numRotors() - 1];
-        if (freeMoving.atNotch()
-                && (!allrotor[numRotors() - 2].reflecting())) {
-            if (allrotor[numRotors() - 2].atNotch()
-                    && (!allrotor[numRotors() - 3].reflecting())) {
-                allrotor[numRotors() - 3].advance();
-            }
-            allrotor[numRotors() - 2].advance();
-            counter += 1;
-        }
-        freeMoving.advance();
-        input = freeMoving.convertForward(input);
-
-        for (int i = numRotors() - 2; i > (numRotors() - numPawls()); i -= 1) {
-            if (allrotor[i].atNotch()
-                    && (!allrotor[i].reflecting())) {
-                if ((i == (numRotors() - 2) && counter == 0)
-                        || i != (numRotors() - 2)) {
-                    allrotor[i - 1].advance();
-                    allrotor[i].advance();
-                }
+        if (_engine == Engine.COMPOSED) {
+            int last = slots.length - 1;
+            if (_staleFrom < last) {
+                compose();
             }
-            input = allrotor[i].convertForward(input);
-        }
-        Rotor leftMost = allrotor[numRotors() - numPawls()];
-        if (leftMost != freeMoving) {
-            input = leftMost.convertForward(input);
+            RotorSpec fast = slots[last];
+            int setting = settings[last];
+            input = fast.backwardRow(setting)[_levels[last - 1][
+                    fast.forwardRow(setting)[input]]];
+            if (_plugboard != null) {
+                input = _plugboard.permute(input);
+            }
+            return input;
         }
-        for (int i = numRotors() - numPawls() - 1; i > -1; i -= 1) {
-            input = allrotor[i].convertForward(input);
+        for (int i = slots.length - 1; i >= 0; i -= 1) {
+            input = slots[i].convertForward(settings[i], input);
         }
-        for (int i = 1; i < numRotors(); i += 1) {
-            input = allrotor[i].convertBackward(input);
+        for (int i = 1; i < slots.length; i += 1) {
+            input = slots[i].convertBackward(settings[i], input);
         }
-        int output = input;
         if (_plugboard != null) {
-            output = _plugboard.permute(output);
+            input = _plugboard.permute(input);
+        }
+        return input;
+    }
+
+    /**
+     * Advance the rotors that move on one keypress.  Working from the
+     * leftmost moving rotor to the right, each rotor moves if it is the
+     * rightmost rotor, if the rotor to its right is at a notch, or if it
+     * is itself at a notch and the rotor to its left has a pawl (double
+     * stepping).  Each decision only looks at rotors that have not yet
+     * moved on this keypress.
+     */
+    private void step() {
+        RotorSpec[] slots = _slots;
+        int[] settings = _settings;
+        int last = slots.length - 1;
+        int first = slots.length - _pawls;
+        for (int i = first; i < last; i += 1) {
+            if (slots[i + 1].notchAt(settings[i + 1])
+                    || (i > first && slots[i].notchAt(settings[i]))) {
+                move(i);
+                if (i < _staleFrom) {
+                    _staleFrom = i;
+                }
+            }
+        }
+        move(last);
+    }
+
+    /**
+     * Bring _levels up to date with the current settings.  Level I is
+     * the permutation a signal undergoes from entering slot I from the
+     * right until it leaves slot I to the right again, so it is built
+     * from level I-1 with one pass through slot I each way; levels below
+     * the leftmost rotor that moved since the last call are still valid.
+     */
+    private void compose() {
+        RotorSpec[] slots = _slots;
+        int[] settings = _settings;
+        int n = _alphabet.size();
+        int last = slots.length - 1;
+        int i = _staleFrom;
+        if (i == 0) {
+            System.arraycopy(slots[0].forwardRow(settings[0]), 0,
+                    _levels[0], 0, n);
+            i = 1;
+        }
+        for (; i < last; i += 1) {
+            int[] level = _levels[i], inner = _levels[i - 1];
+            int[] forward = slots[i].forwardRow(settings[i]);
+            int[] backward = slots[i].backwardRow(settings[i]);
+            for (int x = 0; x < n; x += 1) {
+                level[x] = backward[inner[forward[x]]];
+            }
+        }
+        _staleFrom = last;
+    }
+
+    /**
+     * Advance the rotor in slot I one position, if it rotates.
+     */
+    private void move(int i) {
+        RotorSpec rotor = _slots[i];
+        if (rotor.rotates()) {
+            int next = _settings[i] + 1;
+            _settings[i] = next == rotor.size() ? 0 : next;
         }
-        return output;
     }
 
     /**
@@ -153,17 +689,233 @@ class Machine {
      * the rotors accordingly.
      */
     String convert(String msg) {
-        String resultStr = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            char msgChar = msg.charAt(i);
-            int msgNum = _alphabet.toInt(msgChar);
-            int afterConvert = convert(msgNum);
-            char after = _alphabet.toChar(afterConvert);
-            resultStr += Character.toString(after);
+        char[] buf = msg.toCharArray();
+        convert(buf, 0, buf.length, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * Store the encoding/decoding of the LEN characters of IN starting
+     * at OFF into OUT starting at OUTOFF, updating the state of the
+     * rotors accordingly.  IN and OUT may be the same array.
+     */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        _engine = choose(len);
+        Alphabet alpha = _alphabet;
+        for (int i = 0; i < len; i += 1) {
+            int c = convert(alpha.toInt(in[off + i]));
+            out[outOff + i] = alpha.toChar(c);
+        }
+    }
+
+    /**
+     * Encode/decode characters from IN into OUT until either IN has no
+     * characters remaining or OUT has no room remaining, advancing the
+     * positions of both buffers and updating the state of the rotors
+     * accordingly.
+     */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+        } else {
+            _engine = choose(len);
+            Alphabet alpha = _alphabet;
+            for (int i = 0; i < len; i += 1) {
+                out.put(alpha.toChar(convert(alpha.toInt(in.get()))));
+            }
+        }
+    }
+
+    /**
+     * Encode/decode bytes from IN into OUT until either IN has no bytes
+     * remaining or OUT has no room remaining, advancing the positions
+     * of both buffers and updating the state of the rotors accordingly.
+     * Each byte is taken as the character with the same value (as in
+     * ISO-8859-1, of which ASCII is a part), so my alphabet must consist
+     * of such characters.  Either buffer may be direct.  If a byte is
+     * not in my alphabet, the buffers are left just before it.
+     */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        int[] byteIndex = _byteIndex;
+        byte[] indexByte = _indexByte;
+        if (byteIndex == null) {
+            throw error("alphabet is not single-byte");
+        }
+        int len = Math.min(in.remaining(), out.remaining());
+        _engine = choose(len);
+        int inPos = in.position(), outPos = out.position();
+        int i = 0;
+        try {
+            if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+                byte[] src = in.array(), dst = out.array();
+                int inOff = in.arrayOffset() + inPos;
+                int outOff = out.arrayOffset() + outPos;
+                for (; i < len; i += 1) {
+                    int c = byteIndex[src[inOff + i] & 0xff];
+                    if (c < 0) {
+                        throw error("character out of range");
+                    }
+                    dst[outOff + i] = indexByte[convert(c)];
+                }
+            } else {
+                for (; i < len; i += 1) {
+                    int c = byteIndex[in.get(inPos + i) & 0xff];
+                    if (c < 0) {
+                        throw error("character out of range");
+                    }
+                    out.put(outPos + i, indexByte[convert(c)]);
+                }
+            }
+        } finally {
+            in.position(inPos + i);
+            out.position(outPos + i);
+        }
+    }
+
+    /**
+     * Store the encoding/decoding of the alphabet indices in IN into
+     * the corresponding elements of OUT, updating the state of the
+     * rotors accordingly.  IN and OUT may be the same array.
+     */
+    void convert(int[] in, int[] out) {
+        if (out.length < in.length) {
+            throw error("output array too short");
+        }
+        _engine = choose(in.length);
+        for (int i = 0; i < in.length; i += 1) {
+            out[i] = convert(in[i]);
         }
-        return resultStr;
     }
 
+    /**
+     * Store the encoding/decoding of IN into OUT, which must be at least
+     * as long, exactly as convert(IN, 0, IN.length, OUT, 0) would, but
+     * converting separate chunks of IN concurrently in POOL.  Each
+     * chunk is converted by a copy of me advanced to the chunk's
+     * offset, and I am then advanced past the whole of IN.
+     */
+    void convertParallel(char[] in, char[] out, ForkJoinPool pool) {
+        if (out.length < in.length) {
+            throw error("output array too short");
+        }
+        int chunk = Math.max(MIN_PARALLEL_CHUNK,
+                in.length / (4 * pool.getParallelism()) + 1);
+        if (in.length <= chunk) {
+            convert(in, 0, in.length, out, 0);
+            return;
+        }
+        pool.invoke(new ConvertTask(copy(), in, out, 0, in.length, chunk));
+        advance(in.length);
+    }
+
+    /**
+     * Fewest characters that convertParallel hands to one task.
+     */
+    static final int MIN_PARALLEL_CHUNK = 1 << 16;
+
+    /**
+     * A task that converts one range of a message, splitting it among
+     * subtasks when it is long.
+     */
+    private static class ConvertTask extends RecursiveAction {
+
+        /**
+         * A task converting IN[LO .. HI-1] into OUT[LO .. HI-1] in
+         * pieces of at most CHUNK characters, where START is a machine
+         * in the state for converting IN[0].
+         */
+        ConvertTask(Machine start, char[] in, char[] out, int lo, int hi,
+                    int chunk) {
+            _start = start;
+            _in = in;
+            _out = out;
+            _lo = lo;
+            _hi = hi;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= _chunk) {
+                Machine mach = _start.copy();
+                mach.advance(_lo);
+                mach.convert(_in, _lo, _hi - _lo, _out, _lo);
+            } else {
+                int mid = _lo + (_hi - _lo) / 2;
+                invokeAll(new ConvertTask(_start, _in, _out, _lo, mid, _chunk),
+                        new ConvertTask(_start, _in, _out, mid, _hi, _chunk));
+            }
+        }
+
+        /**
+         * Version of my serialized form, which RecursiveAction requires.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Machine in its state before converting _in[0].
+         */
+        private final Machine _start;
+
+        /**
+         * Message being converted and its destination.
+         */
+        private final char[] _in, _out;
+
+        /**
+         * Bounds of the range converted by this task.
+         */
+        private final int _lo, _hi;
+
+        /**
+         * Largest range converted without splitting.
+         */
+        private final int _chunk;
+    }
+
+    /**
+     * Number of distinct byte values.
+     */
+    private static final int BYTE_VALUES = 256;
+
+    /**
+     * Most block states advanceByBlocks remembers while looking for a
+     * cycle.
+     */
+    private static final int MAX_CYCLE_BLOCKS = 1 << 16;
+
+    /**
+     * The tables of one machine's rotors may take at most this fraction
+     * of the maximum heap, as 1/TABLE_MEMORY_SHARE.
+     */
+    private static final int TABLE_MEMORY_SHARE = 8;
+
+    /**
+     * Estimated costs, in the units of choose, of one rotor pass through
+     * a table, one arithmetic rotor pass, and one step of the rotors.
+     * A pass depends on the one before it, so it costs several times a
+     * composing step, which does not.  Measured on a 26-character
+     * alphabet with five rotors.
+     */
+    private static final int PASS_COST = 3, ARITHMETIC_COST = 8,
+            STEP_COST = 8;
+
+    /**
+     * The alphabet index of each byte value, or -1 for bytes not in my
+     * alphabet, or null if my alphabet has characters beyond one byte.
+     * Shared by my copies.
+     */
+    private int[] _byteIndex;
+
+    /**
+     * The byte value of each alphabet index, or null as for _byteIndex.
+     */
+    private byte[] _indexByte;
+
     /**
      * Common alphabet of my rotors.
      */
@@ -180,22 +932,59 @@ class Machine {
     private int _pawls;
 
     /**
-     * Collection of all rotors.
+     * The available rotors, by name.  Never modified after construction,
+     * so copies of me share it.
      */
-    private ArrayList<Rotor> _allRotor;
+    private final HashMap<String, RotorSpec> _catalog;
 
     /**
-     * Rotors that I inserted.
+     * The rotors in my slots, leftmost (the reflector) first.  Replaced,
+     * never modified, by insertRotors, so copies of me share it.
      */
-    private ArrayList<Rotor> _rotorsList;
+    private RotorSpec[] _slots;
 
     /**
-     * The plugboard of my machine.
+     * The current setting of the rotor in each of my slots.
      */
-    private Permutation _plugboard;
+    private int[] _settings;
+
+    /**
+     * The settings in _settings when my rotors were last set.
+     */
+    private int[] _startSettings;
+
+    /**
+     * Number of characters converted since _startSettings were recorded.
+     */
+    private long _position;
+
+    /**
+     * True iff the rotors in my slots have conversion tables.
+     */
+    private boolean _tabulated;
+
+    /**
+     * The engine of my latest conversion (see engine).
+     */
+    private Engine _engine;
 
     /**
-     * Hashmap that maps name to rotor.
+     * For the rotors in all slots but the rightmost, the composed
+     * conversions described at compose(), or null if my rotors are not
+     * tabulated.  Only _levels[_levels.length - 1] is used to convert;
+     * the lower levels make recomputing it cheap when only the rotors
+     * near the right move.
      */
-    private static HashMap<String, Rotor> _findrotor = new HashMap<>();
+    private int[][] _levels;
+
+    /**
+     * Index of the lowest entry of _levels that no longer matches my
+     * settings, or the number of levels if all are current.
+     */
+    private int _staleFrom;
+
+    /**
+     * The plugboard of my machine.
+     */
+    private Permutation _plugboard;
 }
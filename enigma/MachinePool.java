@@ -0,0 +1,88 @@
+package enigma;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe source of Enigma machines that all share one
+ * configuration.  Machines are copies of a prototype, so they share its
+ * rotor catalog and differ only in their settings.  Released machines
+ * go on a lock-free free list and are set up afresh when they are
+ * handed out again.
+ *
+ * @author Wendi Zhang
+ */
+class MachinePool {
+
+    /**
+     * A pool of copies of PROTOTYPE, a machine as returned by
+     * Main.readConfig, that keeps at most MAXIDLE released machines for
+     * reuse.
+     */
+    MachinePool(Machine prototype, int maxIdle) {
+        _prototype = prototype.copy();
+        _maxIdle = maxIdle;
+    }
+
+    /**
+     * Return a machine that no other thread is using, set up according
+     * to the settings line SETTINGS as for Machine.setUp.
+     */
+    Machine acquire(String settings) {
+        Machine mach = _idle.poll();
+        if (mach == null) {
+            mach = _prototype.copy();
+        } else {
+            _idleCount.decrementAndGet();
+        }
+        try {
+            mach.setUp(settings);
+        } catch (EnigmaException excp) {
+            release(mach);
+            throw excp;
+        }
+        return mach;
+    }
+
+    /**
+     * Return MACH, which must have come from acquire and must no longer
+     * be used by the caller, to the pool.
+     */
+    void release(Machine mach) {
+        if (_idleCount.incrementAndGet() <= _maxIdle) {
+            _idle.offer(mach);
+        } else {
+            _idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return the number of released machines waiting for reuse.
+     */
+    int idle() {
+        return _idleCount.get();
+    }
+
+    /**
+     * The configured machine that all others are copied from.  It is
+     * never set up, so copying it is safe from any thread.
+     */
+    private final Machine _prototype;
+
+    /**
+     * Largest number of released machines kept for reuse.
+     */
+    private final int _maxIdle;
+
+    /**
+     * Released machines.
+     */
+    private final ConcurrentLinkedQueue<Machine> _idle =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of machines in _idle, or about to be.
+     */
+    private final AtomicInteger _idleCount = new AtomicInteger();
+
+}
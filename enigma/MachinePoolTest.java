@@ -0,0 +1,92 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the MachinePool class.
+ *
+ * @author Wendi Zhang
+ */
+public class MachinePoolTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING1 =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+    private static final String SETTING2 =
+            "* B GAMMA II V VII AAAA (MT) (NF) (WH) (LB)";
+
+    private MachinePool pool =
+            new MachinePool(new Machine(UPPER, 5, 3, allRotor1), 4);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReuse() {
+        Machine mach = pool.acquire(SETTING1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+        pool.release(mach);
+        assertEquals(1, pool.idle());
+        Machine again = pool.acquire(SETTING2);
+        assertSame(mach, again);
+        assertEquals(0, pool.idle());
+        assertEquals("FVURXRPWUWCSXJPNWYHBRQRHF",
+                again.convert("THISISACHALLENGINGPROJECT"));
+    }
+
+    @Test
+    public void testBadSettings() {
+        try {
+            pool.acquire("* B BETA III IV AXLE");
+            fail("expected an error for too few rotors");
+        } catch (EnigmaException excp) {
+            assertEquals(1, pool.idle());
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws InterruptedException {
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t += 1) {
+            final String setting = t % 2 == 0 ? SETTING1 : SETTING2;
+            final String msg = t % 2 == 0 ? "FROMHISSHOULDERHIAWATHA"
+                    : "THISISACHALLENGINGPROJECT";
+            final String expected = t % 2 == 0 ? "QVPQSOKOILPUBKJZPISFXDW"
+                    : "FVURXRPWUWCSXJPNWYHBRQRHF";
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i += 1) {
+                    Machine mach = pool.acquire(setting);
+                    if (!mach.convert(msg).equals(expected)) {
+                        failures.incrementAndGet();
+                    }
+                    pool.release(mach);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+        assertTrue(pool.idle() <= 4);
+    }
+}
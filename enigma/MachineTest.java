@@ -6,8 +6,16 @@ import org.junit.rules.Timeout;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static enigma.TestUtils.*;
 
@@ -147,22 +155,22 @@ public class MachineTest {
         mach.insertRotors(rotors);
         mach.setRotors(setting);
 
-        assertEquals("AAAA", getSetting(ac, machineRotors));
+        assertEquals("AAA", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("AABA", getSetting(ac, machineRotors));
+        assertEquals("ABA", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ABDA", getSetting(ac, machineRotors));
+        assertEquals("BDA", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ABAA", getSetting(ac, machineRotors));
+        assertEquals("BAA", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
@@ -170,34 +178,487 @@ public class MachineTest {
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ABCD", getSetting(ac, machineRotors));
+        assertEquals("BCD", mach.settings());
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ACDB", getSetting(ac, machineRotors));
+        assertEquals("CDB", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ACAC", getSetting(ac, machineRotors));
+        assertEquals("CAC", mach.settings());
         mach.convert('a');
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ACBB", getSetting(ac, machineRotors));
+        assertEquals("CBB", mach.settings());
         mach.convert('a');
         mach.convert('a');
-        assertEquals("ACCD", getSetting(ac, machineRotors));
+        assertEquals("CCD", mach.settings());
+    }
+
+    @Test
+    public void testConvertDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().getId();
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                UPPER));
+        int c = 0;
+        for (int i = 0; i < 1000000; i += 1) {
+            c = mach.convert(c);
+        }
+        long overhead = -threads.getThreadAllocatedBytes(id)
+                + threads.getThreadAllocatedBytes(id);
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 1000000; i += 1) {
+            c = mach.convert(c);
+        }
+        long after = threads.getThreadAllocatedBytes(id);
+        assertEquals(0, after - before - overhead);
+    }
+
+    /**
+     * Return a new machine with the settings used in checkMachine4.
+     */
+    private Machine hiawathaMachine() {
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                UPPER));
+        return mach;
+    }
+
+    @Test
+    public void testBulkConvert() {
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        String expected = "QVPQSOKOILPUBKJZPISFXDW";
+
+        char[] out = new char[msg.length() + 2];
+        hiawathaMachine().convert(msg.toCharArray(), 0, msg.length(),
+                out, 2);
+        assertEquals(expected, new String(out, 2, msg.length()));
+
+        Machine mach = hiawathaMachine();
+        CharBuffer in = CharBuffer.wrap(msg);
+        CharBuffer buf = CharBuffer.allocate(10);
+        mach.convert(in, buf);
+        assertEquals(10, in.position());
+        assertEquals(0, buf.remaining());
+        buf.flip();
+        StringBuilder result = new StringBuilder(buf);
+        buf.clear();
+        mach.convert(in, buf);
+        buf.flip();
+        result.append(buf);
+        assertEquals(expected.substring(0, 20), result.toString());
+
+        int[] indices = new int[msg.length()];
+        for (int i = 0; i < indices.length; i += 1) {
+            indices[i] = UPPER.toInt(msg.charAt(i));
+        }
+        hiawathaMachine().convert(indices, indices);
+        for (int i = 0; i < indices.length; i += 1) {
+            assertEquals(expected.charAt(i), UPPER.toChar(indices[i]));
+        }
+    }
+
+    @Test
+    public void testConvertLongMessage() {
+        char[] msg = new char[4000000];
+        Arrays.fill(msg, 'A');
+        String cipher = hiawathaMachine().convert(new String(msg));
+        assertEquals(msg.length, cipher.length());
+        assertEquals(new String(msg), hiawathaMachine().convert(cipher));
+    }
+
+    @Test
+    public void testAdvanceMatchesStepping() {
+        Random random = new Random(61);
+        String[][] stacks = {
+            {"B", "BETA", "III", "IV", "I"},
+            {"C", "GAMMA", "VI", "VII", "VIII"},
+            {"B", "VIII", "II", "VI", "V"},
+            {"C", "I", "II"},
+        };
+        for (String[] stack : stacks) {
+            Machine mach = new Machine(UPPER, stack.length,
+                    stack.length == 3 ? 2 : 3, allRotor1);
+            mach.insertRotors(stack);
+            for (int trial = 0; trial < 20; trial += 1) {
+                char[] setting = new char[stack.length - 1];
+                for (int i = 0; i < setting.length; i += 1) {
+                    setting[i] = UPPER.toChar(random.nextInt(26));
+                }
+                int steps = random.nextInt(2000);
+                mach.setRotors(new String(setting));
+                for (int i = 0; i < steps; i += 1) {
+                    mach.convert(0);
+                }
+                String stepped = mach.settings();
+                mach.setRotors(new String(setting));
+                mach.advance(steps);
+                assertEquals(stepped, mach.settings());
+                assertEquals(steps, mach.position());
+            }
+        }
+    }
+
+    @Test
+    public void testAdvanceSmallAlphabets() {
+        Random random = new Random(1);
+        Alphabet ac = new CharacterRange('A', 'F');
+        for (int trial = 0; trial < 300; trial += 1) {
+            int pawls = 1 + random.nextInt(4);
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            String[] names = new String[pawls + 2];
+            rotors.add(new Reflector("R", new Permutation("(AB)(CD)(EF)",
+                    ac)));
+            rotors.add(new FixedRotor("F", new Permutation("(ACE)", ac)));
+            names[0] = "R";
+            names[1] = "F";
+            for (int i = 0; i < pawls; i += 1) {
+                String notches = "";
+                for (int c = 0; c < 6; c += 1) {
+                    if (random.nextInt(3) == 0) {
+                        notches += ac.toChar(c);
+                    }
+                }
+                names[i + 2] = "M" + i;
+                rotors.add(new MovingRotor(names[i + 2],
+                        new Permutation("(ABCDEF)", ac), notches));
+            }
+            Machine mach = new Machine(ac, names.length, pawls, rotors);
+            mach.insertRotors(names);
+            char[] setting = new char[names.length - 1];
+            for (int i = 0; i < setting.length; i += 1) {
+                setting[i] = ac.toChar(random.nextInt(6));
+            }
+            mach.setRotors(new String(setting));
+            int steps = random.nextInt(3000);
+            for (int i = 0; i < steps; i += 1) {
+                mach.convert(0);
+            }
+            String stepped = mach.settings();
+            mach.seek(steps / 3);
+            mach.seek(steps);
+            assertEquals(stepped, mach.settings());
+        }
+    }
+
+    @Test
+    public void testSeekFarAhead() {
+        Machine mach = hiawathaMachine();
+        mach.advance(3000000000L);
+        mach.advance(2000000000L);
+        String split = mach.settings();
+        mach.seek(0);
+        assertEquals("AXLE", mach.settings());
+        mach.seek(5000000000L);
+        assertEquals(split, mach.settings());
+        assertEquals(5000000000L, mach.position());
+        mach.seek(5000000000L - 17576);
+        mach.advance(17576);
+        assertEquals(split, mach.settings());
+    }
+
+    @Test
+    public void testAdvanceAdjacentNotches() {
+        Alphabet ac = new CharacterRange('A', 'Z');
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(
+                "(AB)(CD)(EF)(GH)(IJ)(KL)(MN)(OP)(QR)(ST)(UV)(WX)(YZ)",
+                ac)));
+        rotors.add(new MovingRotor("M1", new Permutation(
+                "(AELTPHQXRU)(BKNW)(CMOY)(DFG)(IV)(JZ)(S)", ac), "ABC"));
+        rotors.add(new MovingRotor("M2", new Permutation(
+                "(FIXVYOMW)(CDKLHUP)(ESZ)(BJ)(GR)(NT)(A)(Q)", ac),
+                "XYZA"));
+        rotors.add(new MovingRotor("M3", new Permutation(
+                "(ABDHPEJT)(CFLVMZOYQIRWUKXSG)(N)", ac), "MN"));
+        Machine mach = new Machine(ac, 4, 3, rotors);
+        mach.insertRotors(new String[] {"R", "M1", "M2", "M3"});
+        mach.setRotors("AXM");
+        int steps = 200000;
+        for (int i = 0; i < steps; i += 1) {
+            mach.convert(0);
+        }
+        String stepped = mach.settings();
+        mach.seek(0);
+        assertEquals("AXM", mach.settings());
+        mach.seek(steps);
+        assertEquals(stepped, mach.settings());
+        long far = 1000000000000L;
+        mach.seek(0);
+        mach.advance(far - 12345);
+        mach.advance(12345);
+        String split = mach.settings();
+        mach.seek(0);
+        mach.seek(far);
+        assertEquals(split, mach.settings());
+        for (int i = 0; i < 1000; i += 1) {
+            mach.convert(0);
+        }
+        stepped = mach.settings();
+        mach.seek(far + 1000);
+        assertEquals(stepped, mach.settings());
+    }
+
+    @Test
+    public void testConvertParallel() {
+        Random random = new Random(3);
+        char[] msg = new char[1000003];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = UPPER.toChar(random.nextInt(26));
+        }
+        Machine sequential = hiawathaMachine();
+        sequential.convert("PREFIX");
+        String expected = sequential.convert(new String(msg));
+        String expectedSettings = sequential.settings();
+        String expectedTail = sequential.convert("TAIL");
+
+        Machine parallel = hiawathaMachine();
+        parallel.convert("PREFIX");
+        char[] out = new char[msg.length];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.convertParallel(msg, out, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected, new String(out));
+        assertEquals(expectedSettings, parallel.settings());
+        assertEquals(6 + msg.length, parallel.position());
+        assertEquals(expectedTail, parallel.convert("TAIL"));
     }
 
     /**
-     * Helper method to get the String
-     * representation of the current Rotor settings
+     * Return the conversion of C by the rotors named STACK at the
+     * settings SETTING (as from Machine.settings) and plugboard PLUG,
+     * passing through each rotor in turn.
      */
-    private String getSetting(Alphabet alph, Rotor[] machineRotors) {
-        String currSetting = "";
-        for (Rotor r : machineRotors) {
-            currSetting += alph.toChar(r.setting());
+    private int convertByRotors(String[] stack, String setting,
+                                Permutation plug, int c) {
+        RotorSpec[] specs = new RotorSpec[stack.length];
+        for (Rotor rotor : allRotor1) {
+            for (int i = 0; i < stack.length; i += 1) {
+                if (rotor.name().equals(stack[i])) {
+                    specs[i] = rotor.spec();
+                }
+            }
         }
-        return currSetting;
+        int[] settings = new int[stack.length];
+        for (int i = 1; i < stack.length; i += 1) {
+            settings[i] = UPPER.toInt(setting.charAt(i - 1));
+        }
+        c = plug.permute(c);
+        for (int i = stack.length - 1; i >= 0; i -= 1) {
+            c = specs[i].convertForward(settings[i], c);
+        }
+        for (int i = 1; i < stack.length; i += 1) {
+            c = specs[i].convertBackward(settings[i], c);
+        }
+        return plug.permute(c);
+    }
+
+    @Test
+    public void testByteBuffers() {
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp("* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)");
+        Machine reference = mach.copy();
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        ByteBuffer in = ByteBuffer.allocateDirect(msg.length());
+        in.put(msg.getBytes(StandardCharsets.US_ASCII)).flip();
+        ByteBuffer out = ByteBuffer.allocate(10);
+        mach.convert(in, out);
+        assertEquals(10, in.position());
+        ByteBuffer rest = ByteBuffer.allocateDirect(20);
+        mach.convert(in, rest);
+        assertFalse(in.hasRemaining());
+        byte[] result = new byte[msg.length()];
+        out.flip().get(result, 0, 10);
+        rest.flip().get(result, 10, rest.remaining());
+        assertEquals(reference.convert(msg),
+                new String(result, StandardCharsets.US_ASCII));
+
+        ByteBuffer bad = ByteBuffer.wrap("AB CD".getBytes(
+                StandardCharsets.US_ASCII));
+        try {
+            mach.convert(bad, ByteBuffer.allocate(5));
+            fail("expected an EnigmaException");
+        } catch (EnigmaException excp) {
+            assertEquals(2, bad.position());
+        }
+    }
+
+    @Test
+    public void testByteAlphabet() {
+        StringBuilder config = new StringBuilder(Main.BYTE_ALPHABET);
+        config.append("\n 3 1\n F N (10 11)\n M M0020 (00 01 02 FF)\n");
+        config.append("     (20 28 29) (0A 0D)\n R R");
+        for (int i = 0; i < 128; i += 1) {
+            config.append(String.format(" (%02X %02X)", i, i + 128));
+        }
+        Machine mach = Main.readConfig(new ByteArrayInputStream(
+                config.toString().getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(256, mach.alphabet().size());
+        mach.setUp("* R F M 2000 (41 42) (23 7E)");
+        assertEquals("\u0020\u0000", mach.settings());
+        Machine reference = mach.copy();
+        byte[] all = new byte[1024];
+        for (int i = 0; i < all.length; i += 1) {
+            all[i] = (byte) i;
+        }
+        ByteBuffer secret = ByteBuffer.allocate(all.length);
+        mach.convert(ByteBuffer.wrap(all), secret);
+        for (int i = 0; i < all.length; i += 1) {
+            assertTrue(all[i] != secret.get(i));
+        }
+        ByteBuffer plain = ByteBuffer.allocate(all.length);
+        reference.convert(secret.flip(), plain);
+        assertArrayEquals(all, plain.array());
+    }
+
+    @Test
+    public void testByteSettingsInHex() {
+        StringBuilder config = new StringBuilder(Main.BYTE_ALPHABET);
+        config.append("\n 2 1\n M M20 (00 01 02 FF) (20 28 29)\n R R");
+        for (int i = 0; i < 128; i += 1) {
+            config.append(String.format(" (%02X %02X)", i, i + 128));
+        }
+        Machine mach = Main.readConfig(new ByteArrayInputStream(
+                config.toString().getBytes(StandardCharsets.US_ASCII)));
+        mach.setUp("* R M 1f (00 0a) (FF)");
+        assertEquals("\u001f", mach.settings());
+        Machine plain = mach.copy();
+        plain.setUp("* R M 1F");
+        int x = plain.convert(0x0A);
+        assertEquals(x == 0x00 ? 0x0A : x == 0x0A ? 0x00 : x,
+                mach.convert(0x00));
+        for (String bad : new String[] {"* R M 1", "* R M 1G",
+                                        "* R M 1F (0 0A)", "* R M 001F",
+                                        "* R M \u0661F",
+                                        "* R M 1F (\uff10\uff10 0A)"}) {
+            try {
+                mach.setUp(bad);
+                fail(bad + " accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        String alpha = Benchmark.largeAlphabet();
+        int n = alpha.length();
+        assertTrue(n > 60000);
+        Random random = new Random(24);
+        String config = Benchmark.largeConfig(alpha, random);
+        String settings = Benchmark.largeSettings(alpha, random);
+        Machine mach = Main.readConfig(new StringReader(config));
+        assertEquals(n, mach.alphabet().size());
+        mach.setUp(settings);
+        assertEquals(Engine.ARITHMETIC, mach.engine());
+        Machine reference = mach.copy();
+        char[] msg = new char[1000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = alpha.charAt(random.nextInt(n));
+        }
+        String secret = mach.convert(new String(msg));
+        assertEquals(new String(msg), reference.convert(secret));
+    }
+
+    @Test
+    public void testEngineChoice() {
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp("* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)");
+        Machine reference = mach.copy();
+        assertEquals(Engine.COMPOSED, mach.engine());
+        assertEquals("QVP", mach.convert("FRO"));
+        assertEquals(Engine.ROTOR_TABLES, mach.engine());
+        assertEquals("QSOKOILPUBKJ", mach.convert("MHISSHOULDER"));
+        assertEquals(Engine.COMPOSED, mach.engine());
+        assertEquals("Z", mach.convert("H"));
+        assertEquals(Engine.COMPOSED, mach.engine());
+        char[] text = new char[3000];
+        Arrays.fill(text, 'E');
+        String msg = new String(text);
+        StringBuilder pieces = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 7) {
+            reference.seek(i);
+            pieces.append(reference.convert(msg.substring(i,
+                    Math.min(i + 7, msg.length()))));
+        }
+        mach.seek(0);
+        assertEquals(pieces.toString(), mach.convert(msg));
+    }
+
+    @Test
+    public void testComposedStage() {
+        Random random = new Random(10);
+        Permutation plug = new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER);
+        String[][] stacks = {
+            {"B", "BETA", "III", "IV", "I"},
+            {"C", "VI", "VII", "VIII", "V"},
+            {"B", "II", "I"},
+        };
+        int[] pawls = {3, 4, 2};
+        for (int k = 0; k < stacks.length; k += 1) {
+            String[] stack = stacks[k];
+            Machine mach = new Machine(UPPER, stack.length, pawls[k],
+                    allRotor1);
+            mach.insertRotors(stack);
+            mach.setRotors("ZZZZ".substring(0, stack.length - 1));
+            mach.setPlugboard(plug);
+            int[] msg = new int[3000], cipher = new int[msg.length];
+            for (int i = 0; i < msg.length; i += 1) {
+                msg[i] = random.nextInt(26);
+                cipher[i] = mach.convert(msg[i]);
+                assertEquals(convertByRotors(stack, mach.settings(), plug,
+                        msg[i]), cipher[i]);
+            }
+            mach.seek(1000);
+            Machine copy = mach.copy();
+            for (int i = 1000; i < msg.length; i += 1) {
+                assertEquals(cipher[i], mach.convert(msg[i]));
+            }
+            copy.advance(1000);
+            for (int i = 2000; i < msg.length; i += 1) {
+                assertEquals(cipher[i], copy.convert(msg[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testMachinesAreIndependent() {
+        Machine first = hiawathaMachine();
+        Machine second = hiawathaMachine();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                first.convert("FROMHISSHOULDERHIAWATHA"));
+        Machine copy = first.copy();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                second.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("BHCNSCXNUOAATZXSRCFYDGU",
+                first.convert("TOOKTHECAMERAOFROSEWOOD"));
+        assertEquals("BHCNSCXNUOAATZXSRCFYDGU",
+                copy.convert("TOOKTHECAMERAOFROSEWOOD"));
+        assertEquals(first.settings(), copy.settings());
+        assertEquals("AXLE", hiawathaMachine().settings());
+    }
+
+    @Test
+    public void testRotorSpecsAreShared() {
+        Rotor again = new MovingRotor("I",
+                new Permutation(NAVALA.get("I"), UPPER), "Q");
+        assertSame(rotorI.spec(), again.spec());
+        again.advance();
+        assertEquals(0, rotorI.setting());
     }
 }
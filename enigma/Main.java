@@ -1,15 +1,29 @@
 package enigma;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 import java.util.List;
-import java.util.HashMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
-
-import static enigma.TestUtils.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.*;
 
@@ -22,18 +36,65 @@ public final class Main {
 
     /**
      * Process a sequence of encryptions and decryptions, as
-     * specified by ARGS, where 1 <= ARGS.length <= 3.
+     * specified by ARGS, where 1 <= ARGS.length <= 3 after any leading
+     * options.
      * ARGS[0] is the name of a configuration file.
      * ARGS[1] is optional; when present, it names an input file
      * containing messages.  Otherwise, input comes from the standard
      * input.  ARGS[2] is optional; when present, it names an output
      * file for processed messages.  Otherwise, output goes to the
      * standard output. Exits normally if there are no errors in the input;
-     * otherwise with code 1.
+     * otherwise with code 1.  The option --mmap maps the input and
+     * output files into memory when both are given and hold ASCII text,
+     * which is faster for very large files; the output is the same.
+     * The option --parallel=N converts the messages of up to N settings
+     * lines at a time on separate threads (N defaults to the number of
+     * processors); the output and any error are still those of the
+     * first error in input order.  The option --pipeline instead reads,
+     * converts and writes on three threads, so that slow input or
+     * output does not hold up conversion.  The option
+     * --binary=SETTINGS converts the input as raw bytes, with the
+     * machine set up by the settings line SETTINGS, and writes the
+     * result as raw bytes, with no line handling or grouping; its
+     * configuration is normally over bytes (see BYTE_ALPHABET).
+     *
+     * With --serve=ADDRESS as ARGS[0], runs a Server at ADDRESS (a
+     * loopback port number or Unix socket path) that has read the
+     * configuration files named by the rest of ARGS.  With
+     * --client=ADDRESS as ARGS[0], sends the remaining ARGS, taken as
+     * for an ordinary run, to the Server at ADDRESS and reproduces the
+     * run's output, error message and exit code.
+     *
+     * With --compile as ARGS[0], reads the configuration file ARGS[1]
+     * and writes it in compiled form to ARGS[2], conventionally named
+     * with the extension .enigmab.  A configuration file name with that
+     * extension is always read as a compiled configuration.
      */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            if (args.length > 0 && args[0].equals("--compile")) {
+                if (args.length != 3) {
+                    throw error("--compile needs a configuration file and"
+                            + " an output file");
+                }
+                CompiledConfig.compile(readConfig(args[1]), args[2]);
+                return;
+            }
+            if (args.length > 0 && args[0].startsWith("--serve=")) {
+                new Server(Arrays.copyOfRange(args, 1, args.length))
+                        .serve(Frames.address(args[0].substring(8)));
+                return;
+            }
+            if (args.length > 0 && args[0].startsWith("--client=")) {
+                System.exit(new Client(Arrays.copyOfRange(args, 1,
+                        args.length)).run(args[0].substring(9)));
+            }
+            Main main = new Main(args);
+            try {
+                main.process();
+            } finally {
+                main._output.flush();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -45,25 +106,116 @@ public final class Main {
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--");
+             first += 1) {
+            if (args[first].equals("--mmap")) {
+                _mapped = true;
+            } else if (args[first].equals("--parallel")) {
+                _threads = Runtime.getRuntime().availableProcessors();
+            } else if (args[first].startsWith("--parallel=")) {
+                _threads = parseCount(args[first].substring(11));
+            } else if (args[first].equals("--pipeline")) {
+                _pipelined = true;
+            } else if (args[first].startsWith("--binary=")) {
+                _binarySettings = args[first].substring(9);
+            } else {
+                throw error("unknown option %s", args[first]);
+            }
+        }
+        if (_pipelined && _threads > 1) {
+            throw error("--parallel and --pipeline cannot be combined");
+        }
+        if (_binarySettings != null && (_mapped || _pipelined
+                                        || _threads > 1)) {
+            throw error("--binary cannot be combined with other options");
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        openConfig(args[0]);
 
+        Charset charset = Charset.defaultCharset();
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _inputFile = getChannel(args[1]);
+            _inputChannel = _inputFile;
         } else {
-            _input = new Scanner(System.in);
+            _inputChannel = Channels.newChannel(System.in);
         }
+        _input = new ChannelReader(_inputChannel, charset);
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _outputFile = getOutput(args[2]);
+            _outputChannel = _outputFile;
+        } else {
+            _outputChannel =
+                    new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        _output = new ChannelWriter(_outputChannel, charset);
+    }
+
+    /**
+     * A Main for one run of a Server, taking machines from POOL, reading
+     * messages from INPUT and writing them to OUTPUT.
+     */
+    Main(MachinePool pool, MessageReader input, GroupWriter output) {
+        _pool = pool;
+        _input = input;
+        _output = output;
+    }
+
+    /**
+     * A Main that only reads the configuration file named CONFIG.
+     */
+    private Main(String config) {
+        openConfig(config);
+    }
+
+    /**
+     * A Main that only reads the text configuration from CONFIG.
+     */
+    private Main(Scanner config) {
+        _config = config;
+    }
+
+    /**
+     * Return an Enigma machine configured from the text configuration
+     * read from CONFIG.
+     */
+    static Machine readConfig(InputStream config) {
+        return new Main(new Scanner(config)).readConfig();
+    }
+
+    /**
+     * Return an Enigma machine configured from the text configuration
+     * read from CONFIG.
+     */
+    static Machine readConfig(Reader config) {
+        return new Main(new Scanner(config)).readConfig();
+    }
+
+    /**
+     * Open the configuration file named NAME, which is compiled if its
+     * name says so.
+     */
+    private void openConfig(String name) {
+        if (CompiledConfig.isCompiled(name)) {
+            _compiledConfig = getChannel(name);
         } else {
-            _output = System.out;
+            _config = getInput(name);
         }
     }
 
+    /**
+     * Return an Enigma machine configured from the contents of the
+     * configuration file named CONFIG.
+     */
+    static Machine readConfig(String config) {
+        return new Main(config).readConfig();
+    }
+
     /**
      * Return a Scanner reading from the file named NAME.
      */
@@ -76,11 +228,26 @@ public final class Main {
     }
 
     /**
-     * Return a PrintStream writing to the file named NAME.
+     * Return a channel reading from the file named NAME.
+     */
+    private FileChannel getChannel(String name) {
+        try {
+            return FileChannel.open(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /**
+     * Return a channel writing to the file named NAME, which is created
+     * or emptied.
      */
-    private PrintStream getOutput(String name) {
+    private FileChannel getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return FileChannel.open(Paths.get(name),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -89,79 +256,509 @@ public final class Main {
     /**
      * Configure an Enigma machine from the contents of configuration
      * file _config and apply it to the messages in _input, sending the
-     * results to _output.
+     * results to _output.  Each settings line starts a new message,
+     * which runs until the next settings line or the end of the input.
      */
     private void process() {
-        _counter += 1;
-        if (_counter == 1) {
-            machine = readConfig();
-            String firstLine = _input.nextLine();
-            setUp(machine, firstLine);
-            if (!firstLine.split(" ")[0].equals("*")) {
-                throw error("wrong format of input");
+        Machine machine = readConfig();
+        if (_binarySettings != null) {
+            processBinary(machine);
+            return;
+        }
+        _keystreams = new KeystreamCache(machine,
+                KeystreamCache.DEFAULT_BUDGET);
+        if (_mapped) {
+            mapFiles(machine.alphabet());
+        }
+        if (_threads > 1) {
+            processParallel(machine);
+            return;
+        }
+        if (_pipelined) {
+            processPipelined();
+            return;
+        }
+        processSerially();
+    }
+
+    /**
+     * Convert the bytes of _inputChannel by MACHINE, set up according to
+     * _binarySettings, and write the result to _outputChannel, as they
+     * are, with no line handling or grouping.  MACHINE's alphabet must
+     * consist of characters that fit in a byte, as does a ByteAlphabet,
+     * and each byte stands for the character with its value.
+     */
+    private void processBinary(Machine machine) {
+        machine.setUp(_binarySettings);
+        ByteBuffer in = ByteBuffer.allocate(BINARY_BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BINARY_BUFFER_SIZE);
+        while (true) {
+            try {
+                if (_inputChannel.read(in) < 0) {
+                    return;
+                }
+            } catch (IOException excp) {
+                throw error("could not read input: %s", excp.getMessage());
             }
-        } else {
-            if (!tmp.split(" ")[0].equals("*")) {
+            in.flip();
+            machine.convert(in, out);
+            in.compact();
+            out.flip();
+            try {
+                while (out.hasRemaining()) {
+                    _outputChannel.write(out);
+                }
+            } catch (IOException excp) {
+                throw error("could not write output: %s",
+                        excp.getMessage());
+            }
+            out.clear();
+        }
+    }
+
+    /**
+     * Apply my machine to the messages in _input, sending the results to
+     * _output, for a run of a Server.
+     */
+    void processSession() {
+        try {
+            processSerially();
+        } finally {
+            if (_pooled != null) {
+                _pool.release(_pooled);
+            }
+        }
+    }
+
+    /**
+     * Convert the messages in _input one after the other, sending the
+     * results to _output.
+     */
+    private void processSerially() {
+        String settings = _input.nextLine();
+        while (true) {
+            setUp(settings);
+            if (!settings.equals("*") && !settings.startsWith("* ")) {
                 throw error("wrong format of input");
             }
-            setUp(machine, tmp);
+            while (_input.hasNextLine() && !_input.atSettingsLine()) {
+                printMessageLine();
+            }
+            if (!_input.hasNextLine()) {
+                return;
+            }
+            settings = _input.nextLine();
         }
-        while (_input.hasNextLine()) {
-            tmp = _input.nextLine();
-            if (tmp.isEmpty()) {
-                printMessageLine(tmp);
-            } else {
-                if (!tmp.split(" ")[0].equals("*")) {
-                    String result = "";
-                    result += machine.convert(tmp.replaceAll
-                            ("\\s+", "").toUpperCase());
-                    printMessageLine(result);
+    }
+
+    /**
+     * Do what process does with the machine configured as MACHINE, but
+     * converting the segments of input that begin at each settings line
+     * on _threads threads.  The main thread reads segments, and writes
+     * converted segments in input order, keeping at most
+     * MAX_PENDING_PER_THREAD segments per thread in hand.  A segment
+     * longer than MAX_SEGMENT_LENGTH is converted by the main thread as
+     * it is read, after all the segments before it have been written.
+     */
+    private void processParallel(Machine machine) {
+        MachinePool pool = new MachinePool(machine, _threads);
+        ExecutorService executor = Executors.newFixedThreadPool(_threads);
+        ArrayDeque<Future<Segment>> pending = new ArrayDeque<>();
+        try {
+            String settings = nextSettings(pending);
+            while (settings != null) {
+                Segment segment = new Segment(pool, settings);
+                if (readSegment(segment, pending)) {
+                    pending.add(executor.submit(segment));
+                    while (!pending.isEmpty()
+                            && (pending.size()
+                                > MAX_PENDING_PER_THREAD * _threads
+                                || pending.peek().isDone())) {
+                        write(pending.remove());
+                    }
                 } else {
-                    process();
+                    writeAll(pending);
+                    convertRest(segment);
                 }
+                settings = _input.hasNextLine() ? nextSettings(pending)
+                        : null;
             }
+            writeAll(pending);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * Return an Enigma machine configured from the contents of configuration
-     * file _config.
+     * Return the next line of _input, a settings line.  If it cannot be
+     * read, write out the segments in PENDING before reporting it.
      */
-    private Machine readConfig() {
-        int numPawls;
-        int numRotor;
-        boolean normalChar = true;
-        List<Rotor> collection = new ArrayList<>();
+    private String nextSettings(ArrayDeque<Future<Segment>> pending) {
         try {
-            String[] alphabet = _config.nextLine().split("");
-            for (int i = 0; i < alphabet.length; i += 1) {
-                if (alphabet[i].equals("-")) {
-                    normalChar = true;
-                    break;
-                } else {
-                    normalChar = false;
+            return _input.nextLine();
+        } catch (EnigmaException excp) {
+            writeAll(pending);
+            throw excp;
+        }
+    }
+
+    /**
+     * Add the message lines of _input up to the next settings line to
+     * SEGMENT.  Return false, with the rest of the segment unread, if
+     * it grows longer than MAX_SEGMENT_LENGTH.  If the input cannot be
+     * read, write out the segments in PENDING, and then SEGMENT as far
+     * as it was read, before reporting it.
+     */
+    private boolean readSegment(Segment segment,
+                                ArrayDeque<Future<Segment>> pending) {
+        char[] letters = _letters;
+        try {
+            while (_input.hasNextLine() && !_input.atSettingsLine()) {
+                int n;
+                while ((n = _input.readLetters(letters, 0, letters.length))
+                       >= 0) {
+                    segment.append(letters, 0, n);
+                    if (segment.length() > MAX_SEGMENT_LENGTH) {
+                        return false;
+                    }
                 }
+                segment.endLine();
             }
-            if (normalChar) {
-                char startrange = alphabet[0].charAt(0);
-                char endrange = alphabet[alphabet.length - 1].charAt(0);
-                _alphabet = new CharacterRange(startrange, endrange);
-            } else {
-                for (int j = 0; j < alphabet.length; j += 1) {
-                    _myAlphabet.add(alphabet[j].charAt(0));
-                }
-                _alphabet = new MyAlphabet(_myAlphabet);
+            return true;
+        } catch (EnigmaException excp) {
+            writeAll(pending);
+            segment.fail(excp);
+            try {
+                segment.call();
+                segment.writeTo(_output);
+            } finally {
+                segment.release();
             }
-            for (int i = 0; i < alphabet.length; i += 1) {
-                if (alphabet[i].equals(" ")) {
-                    throw error("no space in setting");
+            throw excp;
+        }
+    }
+
+    /**
+     * Convert and write SEGMENT, which readSegment has stopped reading
+     * part way, and then the rest of its message lines, in this thread.
+     */
+    private void convertRest(Segment segment) {
+        segment.call();
+        segment.writeTo(_output);
+        Machine mach = segment.machine();
+        char[] letters = _letters;
+        int n;
+        while ((n = _input.readLetters(letters, 0, letters.length)) >= 0) {
+            mach.convert(letters, 0, n, letters, 0);
+            _output.write(letters, 0, n);
+        }
+        _output.endLine();
+        while (_input.hasNextLine() && !_input.atSettingsLine()) {
+            while ((n = _input.readLetters(letters, 0, letters.length))
+                   >= 0) {
+                mach.convert(letters, 0, n, letters, 0);
+                _output.write(letters, 0, n);
+            }
+            _output.endLine();
+        }
+        segment.release();
+    }
+
+    /**
+     * Write out the segment that RESULT will deliver, once it is ready.
+     */
+    private void write(Future<Segment> result) {
+        Segment segment;
+        try {
+            segment = result.get();
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
+        segment.writeTo(_output);
+        segment.release();
+    }
+
+    /**
+     * Write out all the segments in PENDING, in order.
+     */
+    private void writeAll(ArrayDeque<Future<Segment>> pending) {
+        while (!pending.isEmpty()) {
+            write(pending.remove());
+        }
+    }
+
+    /**
+     * Do what process does once the machine is configured, with reading
+     * (and normalizing) on one thread, converting on this one, and
+     * grouping (and writing) on a third.  The stages pass chunks of
+     * letters through two ChunkRings, whose capacity provides the
+     * backpressure.  An error ends the stage that finds it, and flows
+     * downstream behind the output that precedes it.
+     */
+    private void processPipelined() {
+        ChunkRing letters = new ChunkRing(RING_SIZE, _letters.length);
+        ChunkRing converted = new ChunkRing(RING_SIZE, _letters.length);
+        Thread reader = new Thread(() -> readStage(letters),
+                "enigma-reader");
+        Thread writer = new Thread(() -> writeStage(converted),
+                "enigma-writer");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+        RuntimeException failure;
+        try {
+            failure = convertStage(letters, converted);
+        } catch (RuntimeException excp) {
+            converted.abort();
+            failure = excp;
+        } finally {
+            letters.abort();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        }
+        if (_writeFailure != null) {
+            throw _writeFailure;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Read _input into chunks of normalized letters, line ends and
+     * settings lines, passing them to OUT, followed by an END chunk or
+     * an ERROR chunk if reading fails.
+     */
+    private void readStage(ChunkRing out) {
+        try {
+            if (!sendLine(out, _input.nextLine())) {
+                return;
+            }
+            while (_input.hasNextLine()) {
+                if (_input.atSettingsLine()) {
+                    if (!sendLine(out, _input.nextLine())) {
+                        return;
+                    }
+                    continue;
                 }
-                for (int j = i + 1; j < alphabet.length; j += 1) {
-                    if (alphabet[i].equals(alphabet[j])) {
-                        throw error("no repeat element");
+                while (true) {
+                    ChunkRing.Chunk chunk = out.claim();
+                    if (chunk == null) {
+                        return;
+                    }
+                    chunk.length = _input.readLetters(chunk.data, 0,
+                            chunk.data.length);
+                    chunk.kind = chunk.length < 0 ? ChunkRing.Chunk.LINE_END
+                            : ChunkRing.Chunk.LETTERS;
+                    out.publish();
+                    if (chunk.length < 0) {
+                        break;
                     }
                 }
             }
+            ChunkRing.Chunk chunk = out.claim();
+            if (chunk != null) {
+                chunk.kind = ChunkRing.Chunk.END;
+                out.publish();
+            }
+        } catch (RuntimeException excp) {
+            ChunkRing.Chunk chunk = out.claim();
+            if (chunk != null) {
+                chunk.kind = ChunkRing.Chunk.ERROR;
+                chunk.error = excp;
+                out.publish();
+            }
+        }
+    }
+
+    /**
+     * Pass the settings line LINE to OUT.  Return false if OUT has been
+     * aborted.
+     */
+    private boolean sendLine(ChunkRing out, String line) {
+        ChunkRing.Chunk chunk = out.claim();
+        if (chunk == null) {
+            return false;
+        }
+        chunk.kind = ChunkRing.Chunk.SETTINGS;
+        chunk.line = line;
+        out.publish();
+        return true;
+    }
+
+    /**
+     * Set up for each settings line from IN and convert the letters
+     * that follow, passing them and line ends on to OUT.  Converted
+     * chunks trade buffers with the chunks of OUT instead of being
+     * copied.  Returns the error that stopped conversion, if any, after
+     * passing it to OUT as well.
+     */
+    private RuntimeException convertStage(ChunkRing in, ChunkRing out) {
+        while (true) {
+            ChunkRing.Chunk chunk = in.take();
+            if (chunk == null) {
+                return null;
+            }
+            RuntimeException failure = chunk.error;
+            chunk.error = null;
+            if (chunk.kind == ChunkRing.Chunk.SETTINGS) {
+                try {
+                    setUp(chunk.line);
+                    if (!chunk.line.equals("*")
+                            && !chunk.line.startsWith("* ")) {
+                        throw error("wrong format of input");
+                    }
+                } catch (EnigmaException excp) {
+                    failure = excp;
+                }
+                chunk.line = null;
+                if (failure == null) {
+                    in.release();
+                    continue;
+                }
+            } else if (chunk.kind == ChunkRing.Chunk.LETTERS) {
+                try {
+                    _message.convert(chunk.data, 0, chunk.length,
+                            chunk.data, 0);
+                } catch (EnigmaException excp) {
+                    failure = excp;
+                }
+            }
+            ChunkRing.Chunk next = out.claim();
+            if (next == null) {
+                return null;
+            }
+            if (failure != null) {
+                next.kind = ChunkRing.Chunk.ERROR;
+                out.publish();
+                return failure;
+            }
+            char[] data = next.data;
+            next.data = chunk.data;
+            chunk.data = data;
+            next.kind = chunk.kind;
+            next.length = chunk.length;
+            out.publish();
+            in.release();
+            if (next.kind == ChunkRing.Chunk.END) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Write the letters and line ends from IN to _output until an END or
+     * ERROR chunk.  If writing fails, record the error in _writeFailure
+     * and abort IN.
+     */
+    private void writeStage(ChunkRing in) {
+        try {
+            while (true) {
+                ChunkRing.Chunk chunk = in.take();
+                if (chunk == null || chunk.kind == ChunkRing.Chunk.ERROR) {
+                    return;
+                } else if (chunk.kind == ChunkRing.Chunk.END) {
+                    _output.flush();
+                    return;
+                } else if (chunk.kind == ChunkRing.Chunk.LINE_END) {
+                    _output.endLine();
+                } else {
+                    _output.write(chunk.data, 0, chunk.length);
+                }
+                in.release();
+            }
+        } catch (RuntimeException excp) {
+            _writeFailure = excp;
+            in.abort();
+        }
+    }
+
+    /**
+     * Return the positive number denoted by NUMERAL.
+     */
+    private static int parseCount(String numeral) {
+        try {
+            int count = Integer.parseInt(numeral);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad count: %s", numeral);
+    }
+
+    /**
+     * Switch _input and _output to mapping the input and output files
+     * into memory, if there are such files, the default charset and
+     * ALPHABET are ASCII, and the input is ASCII.
+     */
+    private void mapFiles(Alphabet alphabet) {
+        if (_inputFile == null || _outputFile == null
+                || !isAscii(Charset.defaultCharset())) {
+            return;
+        }
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            if (alphabet.toChar(i) >= ASCII_LIMIT) {
+                return;
+            }
+        }
+        MappedReader input = new MappedReader(_inputFile);
+        long length = input.outputLength();
+        if (length >= 0) {
+            _input = input;
+            _output = new MappedWriter(_outputFile, length);
+        }
+    }
+
+    /**
+     * Return true iff CHARSET encodes ASCII characters as single bytes
+     * with their ASCII values.
+     */
+    private static boolean isAscii(Charset charset) {
+        char[] ascii = new char[ASCII_LIMIT];
+        for (int c = 0; c < ascii.length; c += 1) {
+            ascii[c] = (char) c;
+        }
+        byte[] bytes = new String(ascii).getBytes(charset);
+        if (bytes.length != ascii.length) {
+            return false;
+        }
+        for (int c = 0; c < bytes.length; c += 1) {
+            if (bytes[c] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return an Enigma machine configured from the contents of configuration
+     * file _config, or of _compiledConfig if that is open.
+     */
+    private Machine readConfig() {
+        if (_compiledConfig != null) {
+            return CompiledConfig.load(_compiledConfig);
+        }
+        int numPawls;
+        int numRotor;
+        List<Rotor> collection = new ArrayList<>();
+        try {
+            String alphabetLine = _config.nextLine();
+            if (alphabetLine.trim().equals(BYTE_ALPHABET)) {
+                _alphabet = new ByteAlphabet();
+            } else {
+                readAlphabet(alphabetLine);
+            }
             if (!_config.hasNextInt()) {
                 throw error("wrong format of configuration file");
             } else {
@@ -174,9 +771,9 @@ public final class Main {
                 if (rotorline.replaceAll(" ", "").isEmpty()) {
                     throw error("wrong format of config");
                 }
-                Rotor currrotor = readRotor();
+                Rotor currrotor = _alphabet instanceof ByteAlphabet
+                        ? readByteRotor() : readRotor();
                 collection.add(currrotor);
-                _findrotor.put(currrotor.name(), currrotor);
             }
             return new Machine(_alphabet, numRotor, numPawls, collection);
         } catch (NoSuchElementException excp) {
@@ -184,12 +781,39 @@ public final class Main {
         }
     }
 
+    /**
+     * Set _alphabet to the alphabet described by LINE, the first line of
+     * a text configuration: either a range such as "A-Z", or all the
+     * characters of the alphabet.
+     */
+    private void readAlphabet(String line) {
+        char[] chars = line.toCharArray();
+        if (chars.length == 0) {
+            throw error("empty range of characters");
+        }
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        for (char ch : chars) {
+            if (ch == ' ') {
+                throw error("no space in setting");
+            }
+            if (seen[ch]) {
+                throw error("no repeat element");
+            }
+            seen[ch] = true;
+        }
+        if (seen['-']) {
+            _alphabet = new CharacterRange(chars[0], chars[chars.length - 1]);
+        } else {
+            _alphabet = new MyAlphabet(chars);
+        }
+    }
+
     /**
      * Return a rotor, reading its description from _config.
      */
     private Rotor readRotor() {
         try {
-            String cycles = "";
+            StringBuilder cycles = new StringBuilder();
             String rotorname, rotortype, typeAndNotch, notches = "";
             while (true) {
                 String rotorLine = rotorline.trim();
@@ -210,7 +834,7 @@ public final class Main {
                         throw error("wrong format of cycle");
                     }
                     for (int i = 2; i < rotorInfo.length; i += 1) {
-                        cycles += rotorInfo[i];
+                        cycles.append(rotorInfo[i]);
                     }
                     String last = rotorInfo[rotorInfo.length - 1];
                     if (last.charAt(last.length() - 1) != ')') {
@@ -222,13 +846,14 @@ public final class Main {
                         String rline = _config.nextLine().trim();
                         String[] permInfo = rline.split("\\s+");
                         for (int i = 0; i < permInfo.length; i += 1) {
-                            cycles += permInfo[i];
+                            cycles.append(permInfo[i]);
                         }
                     }
                 } else {
                     throw error("wrong format of config file");
                 }
-                Permutation rotorPerm = new Permutation(cycles, _alphabet);
+                Permutation rotorPerm = new Permutation(cycles.toString(),
+                        _alphabet);
                 if (rotortype.equals("M")) {
                     return new MovingRotor(rotorname, rotorPerm, notches);
                 } else if (rotortype.equals("N")) {
@@ -245,129 +870,214 @@ public final class Main {
     }
 
     /**
-     * Set M according to the specification given on SETTINGS,
-     * which must have the format specified in the assignment.
+     * Return a rotor over the ByteAlphabet whose description starts on
+     * the line rotorline, reading any continuation lines (lines that
+     * start with a cycle) from _config.  Notches and cycles are written
+     * with two hex digits per byte, as in "M0A1F (00 3F 41) (0D 0A)".
      */
-    private void setUp(Machine M, String settings) {
-        List<String> rotorsName = new ArrayList<>();
-        int mRotors = M.numRotors();
-        int nPawls = M.numPawls();
-        int intpos = 0;
-        int countmoving = 0;
-        settings.trim();
-        String[] setArr = settings.split("\\s+");
-        if (!setArr[0].equals("*")) {
-            throw error("wrong setting line format");
-        }
-        Rotor reflector = _findrotor.get(setArr[1]);
-        if (!reflector.reflecting()) {
-            throw error("reflector in wrong place");
+    private Rotor readByteRotor() {
+        String[] rotorInfo = rotorline.trim().split("\\s+", 3);
+        if (rotorInfo.length < 2 || rotorInfo[0].charAt(0) == '(') {
+            throw error("wrong format of config file");
         }
-        for (int i = 1; i < setArr.length; i += 1) {
-            if (_findrotor.containsKey(setArr[i])) {
-                rotorsName.add(setArr[i]);
-            } else {
-                intpos = i;
-                break;
-            }
+        String rotortype = rotorInfo[1].substring(0, 1);
+        String notches = rotorInfo[1].substring(1);
+        if (!notches.isEmpty() && !rotortype.equals("M")) {
+            throw error("R and N have no notch");
         }
-        if (rotorsName.size() != mRotors) {
-            throw error("wrong number of rotors");
+        StringBuilder cycles = new StringBuilder();
+        if (rotorInfo.length > 2) {
+            cycles.append(rotorInfo[2]);
         }
-        for (int i = 0; i < rotorsName.size(); i += 1) {
-            Rotor currRotor = _findrotor.get(rotorsName.get(i));
-            if (currRotor.rotates()) {
-                countmoving += 1;
-            }
+        while (_config.hasNext("\\(.*")) {
+            cycles.append(' ').append(_config.nextLine());
         }
-        if (countmoving != nPawls) {
-            throw error("wrong number of moving rotors");
+        int[] forward = new int[ByteAlphabet.SIZE];
+        int[] inverse = new int[ByteAlphabet.SIZE];
+        ByteAlphabet.readCycles(cycles.toString(), forward, inverse);
+        if (notches.length() % 2 != 0) {
+            throw error("bad byte value %s", notches);
         }
-        String setRotor = setArr[intpos];
-        if (setRotor.length() != mRotors - 1) {
-            throw error("wrong format of setting");
+        boolean[] notchAt = new boolean[ByteAlphabet.SIZE];
+        for (int i = 0; i < notches.length(); i += 2) {
+            notchAt[ByteAlphabet.parse(notches.substring(i, i + 2))] = true;
         }
-        String plugCycles = "";
-        for (int j = intpos + 1; j < setArr.length; j += 1) {
-            plugCycles += setArr[j];
+        Permutation perm = new Permutation(forward, inverse, _alphabet);
+        String name = rotorInfo[0];
+        if (rotortype.equals("M")) {
+            return new Rotor(RotorSpec.restore(name, perm, notchAt, true,
+                    false));
+        } else if (rotortype.equals("N")) {
+            return new Rotor(RotorSpec.restore(name, perm, notchAt, false,
+                    false));
+        } else if (rotortype.equals("R")) {
+            return new Rotor(RotorSpec.restore(name, perm, notchAt, false,
+                    true));
+        } else {
+            throw error("rotor type not found");
         }
-        String[] rotors = new String[rotorsName.size()];
-        rotors = rotorsName.toArray(rotors);
-        for (int i = 0; i < setRotor.length(); i += 1) {
-            if (!_alphabet.contains(setRotor.charAt(i))) {
-                throw error("wrong initial position");
-            }
+    }
+
+    /**
+     * Start a new message set up according to the specification given
+     * on SETTINGS, which must have the format specified in the
+     * assignment.
+     */
+    private void setUp(String settings) {
+        if (_pool == null) {
+            _message = _keystreams.start(settings);
+            return;
         }
-        if (setArr.length > (mRotors + 2)
-                && setArr[mRotors + 2].charAt(0) != '(') {
-            throw error("wrong format of cycle");
+        if (_pooled != null) {
+            _pool.release(_pooled);
+            _pooled = null;
         }
-        M.insertRotors(rotors);
-        M.setRotors(setRotor);
-        M.setPlugboard(new Permutation(plugCycles, _alphabet));
+        _pooled = _pool.acquire(settings);
+        _message = KeystreamCache.direct(_pooled);
     }
 
     /**
-     * Print MSG in groups of five (except that the last group may
-     * have fewer letters).
+     * Convert the next line of _input, a message line, and print it in
+     * groups of five (except that the last group may have fewer
+     * letters), a chunk at a time.
      */
-    private void printMessageLine(String msg) {
-        String message = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            if ((i + 1) % 5 == 0) {
-                message += msg.charAt(i);
-                message += " ";
-            } else {
-                message += msg.charAt(i);
-            }
+    private void printMessageLine() {
+        char[] letters = _letters;
+        int n;
+        while ((n = _input.readLetters(letters, 0, letters.length)) >= 0) {
+            _message.convert(letters, 0, n, letters, 0);
+            _output.write(letters, 0, n);
         }
-        _output.println(message);
+        _output.endLine();
     }
 
+    /**
+     * Most segments processParallel has in hand per thread.
+     */
+    private static final int MAX_PENDING_PER_THREAD = 4;
+
+    /**
+     * Most letters of a segment that processParallel buffers.
+     */
+    private static final int MAX_SEGMENT_LENGTH = 1 << 20;
+
+    /**
+     * Number of chunks in each ring of processPipelined.
+     */
+    private static final int RING_SIZE = 16;
+
+    /**
+     * Characters below this are ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * The first line of a text configuration over the ByteAlphabet.  It
+     * contains a blank, so it cannot be mistaken for a list of
+     * characters.
+     */
+    static final String BYTE_ALPHABET = "BYTES 00-FF";
+
+    /**
+     * Size of the buffers of processBinary.
+     */
+    private static final int BINARY_BUFFER_SIZE = 1 << 16;
+
     /**
      * Alphabet used in this machine.
      */
     private Alphabet _alphabet;
 
     /**
-     * MyAlphabet used in this machine.
+     * Source of input messages.
      */
-    private ArrayList<Character> _myAlphabet = new ArrayList<>();
+    private MessageReader _input;
 
     /**
-     * Source of input messages.
+     * The input file, or null if input comes from the standard input.
+     */
+    private FileChannel _inputFile;
+
+    /**
+     * The output file, or null if output goes to the standard output.
+     */
+    private FileChannel _outputFile;
+
+    /**
+     * The channel of _input.
+     */
+    private ReadableByteChannel _inputChannel;
+
+    /**
+     * The channel of _output.
      */
-    private Scanner _input;
+    private WritableByteChannel _outputChannel;
+
+    /**
+     * The settings line for a binary run, or null.
+     */
+    private String _binarySettings;
+
+    /**
+     * True iff the input and output files should be mapped into memory.
+     */
+    private boolean _mapped;
+
+    /**
+     * The number of threads converting messages.
+     */
+    private int _threads = 1;
+
+    /**
+     * True iff reading, converting and writing run on separate threads.
+     */
+    private boolean _pipelined;
+
+    /**
+     * The error that stopped the writing thread of processPipelined, or
+     * null.
+     */
+    private volatile RuntimeException _writeFailure;
 
     /**
      * Source of machine configuration.
      */
     private Scanner _config;
 
+    /**
+     * Source of compiled machine configuration, or null.
+     */
+    private FileChannel _compiledConfig;
+
     /**
      * File for encoded/decoded messages.
      */
-    private PrintStream _output;
+    private GroupWriter _output;
+
+    /**
+     * Buffer for the chunk of a message line being converted.
+     */
+    private final char[] _letters = new char[1 << 13];
 
     /**
-     * Set a counter for the function process().
+     * Keystreams of the settings lines seen so far.
      */
-    private int _counter;
+    private KeystreamCache _keystreams;
 
     /**
-     * Set tmp string for process().
+     * The message being converted.
      */
-    private String tmp = "";
+    private KeystreamCache.Message _message;
 
     /**
-     * Set machine for process.
+     * Source of machines for the messages of a Server run, or null.
      */
-    private Machine machine = new Machine(_alphabet, 0, 0, allRotor1);
+    private MachinePool _pool;
 
     /**
-     * Hashmap for matching rotor name with rotors.
+     * The machine from _pool converting the current message, or null.
      */
-    private static HashMap<String, Rotor> _findrotor = new HashMap<>();
+    private Machine _pooled;
 
     /**
      * Rotorline for checking empty.
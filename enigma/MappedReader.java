@@ -0,0 +1,212 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A reader of Enigma input from an ASCII file that is mapped into memory
+ * a window at a time, so that characters come straight from the page
+ * cache with no copying or decoding.
+ *
+ * @author Wendi Zhang
+ */
+class MappedReader extends MessageReader {
+
+    /**
+     * A reader of the file open on IN.
+     */
+    MappedReader(FileChannel in) {
+        _in = in;
+        try {
+            _size = in.size();
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        map(0);
+    }
+
+    /**
+     * Return the number of characters that Main writes for my input,
+     * as computed by GroupWriter.lineLength, or -1 if the input is not
+     * all ASCII.  Leaves me positioned at the start of the input.
+     */
+    long outputLength() {
+        long total = 0;
+        char[] scratch = new char[SCRATCH_SIZE];
+        while (hasNextLine()) {
+            if (atSettingsLine()) {
+                nextLine();
+            } else {
+                long letters = 0;
+                int n;
+                while ((n = readLetters(scratch, 0, scratch.length)) >= 0) {
+                    letters += n;
+                }
+                total += GroupWriter.lineLength(letters);
+            }
+        }
+        boolean ascii = _bits < 0x80;
+        _pos = 0;
+        map(0);
+        return ascii ? total : -1;
+    }
+
+    @Override
+    boolean hasNextLine() {
+        return _pos < _size;
+    }
+
+    @Override
+    boolean atSettingsLine() {
+        if (peek(0) != '*') {
+            return false;
+        }
+        int next = peek(1);
+        return next < 0 || next == ' ' || isLineEnd((char) next);
+    }
+
+    @Override
+    String nextLine() {
+        if (_pos >= _size) {
+            throw error("input truncated");
+        }
+        StringBuilder line = new StringBuilder();
+        while (_pos < _size) {
+            char c = (char) next();
+            if (isLineEnd(c)) {
+                skipNewline(c);
+                break;
+            }
+            line.append(c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    int readLetters(char[] buf, int off, int len) {
+        if (_lineEnded) {
+            _lineEnded = false;
+            return -1;
+        }
+        int n = 0;
+        while (n < len) {
+            if (_pos >= _size) {
+                return n == 0 ? -1 : n;
+            }
+            char c = (char) next();
+            if (isLineEnd(c)) {
+                skipNewline(c);
+                if (n == 0) {
+                    return -1;
+                }
+                _lineEnded = true;
+                break;
+            }
+            int normal = normalize(c);
+            if (normal >= 0) {
+                buf[off + n] = (char) normal;
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Having just read the line terminator C, skip the \n of a \r\n.
+     */
+    private void skipNewline(char c) {
+        if (c == '\r' && peek(0) == '\n') {
+            next();
+        }
+    }
+
+    /**
+     * Return the byte K places past the current one, or -1 past the end
+     * of the input.
+     */
+    private int peek(int k) {
+        long p = _pos + k;
+        if (p >= _size) {
+            return -1;
+        }
+        if (p - _base >= _window.limit()) {
+            map(_pos);
+        }
+        return _window.get((int) (p - _base)) & 0xff;
+    }
+
+    /**
+     * Return the current byte, which must exist, and move past it.
+     */
+    private int next() {
+        if (_pos - _base >= _window.limit()) {
+            map(_pos);
+        }
+        int b = _window.get((int) (_pos - _base)) & 0xff;
+        _pos += 1;
+        _bits |= b;
+        return b;
+    }
+
+    /**
+     * Map the window of input beginning at byte START.
+     */
+    private void map(long start) {
+        try {
+            _base = start;
+            _window = _in.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(WINDOW_SIZE, _size - start));
+        } catch (IOException excp) {
+            throw error("could not map input: %s", excp.getMessage());
+        }
+    }
+
+    /**
+     * Largest portion of the input mapped at once.
+     */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Size of the buffer that outputLength uses for letters.
+     */
+    private static final int SCRATCH_SIZE = 1 << 13;
+
+    /**
+     * The input file.
+     */
+    private final FileChannel _in;
+
+    /**
+     * Length of the input in bytes.
+     */
+    private final long _size;
+
+    /**
+     * The mapped window of input.
+     */
+    private MappedByteBuffer _window;
+
+    /**
+     * Offset in the input of _window's first byte.
+     */
+    private long _base;
+
+    /**
+     * Offset in the input of the next byte to read.
+     */
+    private long _pos;
+
+    /**
+     * The bitwise or of all bytes read.
+     */
+    private int _bits;
+
+    /**
+     * True iff readLetters has consumed a line terminator but not yet
+     * reported the end of the line.
+     */
+    private boolean _lineEnded;
+}
@@ -0,0 +1,89 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A writer of converted message lines straight into an ASCII file that
+ * is mapped into memory a window at a time.  The length of the output
+ * must be known in advance.
+ *
+ * @author Wendi Zhang
+ */
+class MappedWriter extends GroupWriter {
+
+    /**
+     * A writer of exactly LENGTH characters to the empty file open for
+     * reading and writing on OUT.
+     */
+    MappedWriter(FileChannel out, long length) {
+        _out = out;
+        _length = length;
+        map(0);
+    }
+
+    @Override
+    void put(char c) {
+        if (!_window.hasRemaining()) {
+            long next = _base + _window.limit();
+            if (next >= _length) {
+                throw error("output longer than expected");
+            }
+            map(next);
+        }
+        _window.put((byte) c);
+    }
+
+    /**
+     * Cut the file short after the characters written so far, in case I
+     * am stopped by an error before writing all of them.
+     */
+    @Override
+    void flush() {
+        long written = _base + _window.position();
+        if (written < _length) {
+            try {
+                _out.truncate(written);
+            } catch (IOException excp) {
+                throw error("could not write output: %s",
+                        excp.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Map the window of output beginning at byte START.
+     */
+    private void map(long start) {
+        try {
+            _base = start;
+            _window = _out.map(FileChannel.MapMode.READ_WRITE, start,
+                    Math.min(MappedReader.WINDOW_SIZE, _length - start));
+        } catch (IOException excp) {
+            throw error("could not map output: %s", excp.getMessage());
+        }
+    }
+
+    /**
+     * The output file.
+     */
+    private final FileChannel _out;
+
+    /**
+     * Length of the output in bytes.
+     */
+    private final long _length;
+
+    /**
+     * The mapped window of output.
+     */
+    private MappedByteBuffer _window;
+
+    /**
+     * Offset in the output of _window's first byte.
+     */
+    private long _base;
+}
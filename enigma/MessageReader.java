@@ -0,0 +1,69 @@
+package enigma;
+
+/**
+ * A reader of Enigma input.  Settings lines are read whole; message
+ * lines are read a chunk at a time, already stripped of whitespace and
+ * upper-cased, so that a line of any length needs only a fixed amount
+ * of memory.  Lines end at the same terminators that Scanner.nextLine
+ * recognizes.
+ *
+ * @author Wendi Zhang
+ */
+abstract class MessageReader {
+
+    /**
+     * Return true iff there is another line to read.
+     */
+    abstract boolean hasNextLine();
+
+    /**
+     * Return true iff the next line is a settings line: one that is
+     * just "*" or begins with "* ".
+     */
+    abstract boolean atSettingsLine();
+
+    /**
+     * Read and return the whole of the next line, without its
+     * terminator.
+     */
+    abstract String nextLine();
+
+    /**
+     * Store up to LEN characters of the rest of the current line into
+     * BUF starting at OFF, leaving out whitespace and converting letters
+     * to upper case, and return how many were stored.  Returns -1,
+     * having consumed the line terminator, when no characters of the
+     * line remain.
+     */
+    abstract int readLetters(char[] buf, int off, int len);
+
+    /**
+     * Return true iff C ends a line.
+     */
+    static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+                || c == '\u0085';
+    }
+
+    /**
+     * Return what C becomes in a message, or -1 if it is whitespace that
+     * messages ignore.
+     */
+    static int normalize(char c) {
+        return c < LATIN1.length ? LATIN1[c] : Character.toUpperCase(c);
+    }
+
+    /**
+     * For each character below 256, what normalize returns.
+     */
+    private static final int[] LATIN1 = new int[256];
+
+    static {
+        for (int c = 0; c < LATIN1.length; c += 1) {
+            LATIN1[c] = Character.toUpperCase(c);
+        }
+        for (char c : " \t\n\u000b\f\r".toCharArray()) {
+            LATIN1[c] = -1;
+        }
+    }
+}
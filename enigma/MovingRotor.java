@@ -1,7 +1,5 @@
 package enigma;
 
-import static enigma.EnigmaException.*;
-
 /**
  * Class that represents a rotating rotor in the enigma machine.
  *
@@ -17,34 +15,7 @@ class MovingRotor extends Rotor {
      * alphabet).
      */
     MovingRotor(String name, Permutation perm, String notches) {
-        super(name, perm);
-        _notches = notches;
-    }
-
-    @Override
-    boolean rotates() {
-        return true;
-    }
-
-    @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i += 1) {
-            int notch = super.alphabet().toInt(_notches.charAt(i));
-            if (setting() == notch) {
-                return true;
-            }
-        }
-        return false;
+        super(RotorSpec.moving(name, perm, notches));
     }
 
-    @Override
-    void advance() {
-        setting += 1;
-    }
-
-    /**
-     * My notches.
-     */
-    private String _notches;
-
 }
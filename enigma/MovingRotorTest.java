@@ -88,5 +88,22 @@ public class MovingRotorTest {
         rotor.set(25);
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
+
+    @Test
+    public void checkLargeAlphabetRotor() {
+        Alphabet wide = new CharacterRange('\u4e00', '\u4eff');
+        rotor = new MovingRotor("WIDE",
+                new Permutation("(\u4e00\u4e42\u4eff) (\u4e20\u4e21)", wide),
+                "");
+        assertEquals(256, rotor.size());
+        rotor.set(255);
+        assertEquals(0x43, rotor.convertForward(1));
+        assertEquals(1, rotor.convertBackward(0x43));
+        rotor.advance();
+        assertEquals(0, rotor.setting());
+        assertEquals(0x42, rotor.convertForward(0));
+        assertEquals(0xff, rotor.convertForward(0x42));
+        assertEquals(0x21, rotor.convertBackward(0x20));
+    }
 }
 
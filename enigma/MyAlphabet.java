@@ -1,6 +1,7 @@
 package enigma;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
@@ -16,41 +17,96 @@ class MyAlphabet extends Alphabet {
      * @param alphabet Create my alphabet.
      */
     MyAlphabet(ArrayList<Character> alphabet) {
-        if (alphabet.isEmpty()) {
+        this(toArray(alphabet));
+    }
+
+    /**
+     * An alphabet of the characters CHARS, in order, which becomes mine.
+     */
+    MyAlphabet(char[] chars) {
+        if (chars.length == 0) {
             throw error("empty range of characters");
         }
-        _myalphabet = alphabet;
+        _chars = chars;
+        _pages = new int[PAGE_COUNT][];
+        for (int i = _chars.length - 1; i >= 0; i -= 1) {
+            char ch = _chars[i];
+            int[] page = _pages[ch >>> PAGE_BITS];
+            if (page == null) {
+                page = new int[PAGE_SIZE];
+                Arrays.fill(page, -1);
+                _pages[ch >>> PAGE_BITS] = page;
+            }
+            page[ch & (PAGE_SIZE - 1)] = i;
+        }
+    }
+
+    /**
+     * Return the characters of ALPHABET as an array.
+     */
+    private static char[] toArray(ArrayList<Character> alphabet) {
+        char[] chars = new char[alphabet.size()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = alphabet.get(i);
+        }
+        return chars;
     }
 
     @Override
     int size() {
-        return _myalphabet.size();
+        return _chars.length;
     }
 
     @Override
     boolean contains(char ch) {
-        return _myalphabet.contains(ch);
+        int[] page = _pages[ch >>> PAGE_BITS];
+        return page != null && page[ch & (PAGE_SIZE - 1)] >= 0;
     }
 
     @Override
     char toChar(int index) {
-        if (index > size()) {
+        if (index < 0 || index >= _chars.length) {
             throw error("character index out of range");
         }
-        return _myalphabet.get(index);
+        return _chars[index];
     }
 
     @Override
     int toInt(char ch) {
-        if (!contains(ch)) {
+        int[] page = _pages[ch >>> PAGE_BITS];
+        int index = page == null ? -1 : page[ch & (PAGE_SIZE - 1)];
+        if (index < 0) {
             throw error("character out of range");
         }
-        return _myalphabet.indexOf(ch);
+        return index;
     }
 
     /**
-     * Arraylist taking in to construct the alphabet.
+     * Number of low-order bits of a character that select its entry
+     * within a page of _pages.
+     */
+    private static final int PAGE_BITS = 8;
+
+    /**
+     * Number of characters covered by one page of _pages.
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * Number of pages needed to cover every char value.
+     */
+    private static final int PAGE_COUNT = 1 << (Character.SIZE - PAGE_BITS);
+
+    /**
+     * My characters in order.
+     */
+    private final char[] _chars;
+
+    /**
+     * Index of each character in _chars, or -1, paged by the high-order
+     * bits of the character.  Pages containing none of my characters
+     * are null.  A character appearing twice maps to its first position.
      */
-    private ArrayList<Character> _myalphabet;
+    private final int[][] _pages;
 
 }
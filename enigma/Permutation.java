@@ -1,8 +1,5 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.ArrayList;
-
 import static enigma.EnigmaException.*;
 
 /**
@@ -20,60 +17,86 @@ class Permutation {
      * Whitespace is ignored.
      */
     Permutation(String cycles, Alphabet alphabet) {
-        ArrayList<String> cycle = new ArrayList<>();
         _cycles = cycles;
         _alphabet = alphabet;
+        _forward = new int[_alphabet.size()];
+        _inverse = new int[_alphabet.size()];
+        for (int a = 0; a < _forward.length; a += 1) {
+            _forward[a] = a;
+            _inverse[a] = a;
+        }
+        int[] cycle = new int[_cycles.length()];
         for (int i = 0; i < _cycles.length(); i += 1) {
-            String each = "";
             if (_cycles.charAt(i) == '(') {
+                int len = 0;
                 i += 1;
-                while (_cycles.charAt(i) != ')') {
-                    each += _cycles.charAt(i);
+                while (i < _cycles.length() && _cycles.charAt(i) != ')') {
+                    char ch = _cycles.charAt(i);
+                    if (!Character.isWhitespace(ch)) {
+                        cycle[len] = _alphabet.toInt(ch);
+                        len += 1;
+                    }
                     i += 1;
                 }
-                if (each.equals("") || each.matches("\\s+")) {
+                if (i == _cycles.length()) {
+                    throw error("wrong format of permutation:"
+                            + "cycle is not closed");
+                }
+                if (len == 0) {
                     throw error("wrong format of permutation:"
                             + "added cycle cannot be empty");
                 }
-                cycle.add(each);
+                addCycle(cycle, len);
             }
         }
-        for (int i = 0; i < cycle.size(); i += 1) {
-            String eachcycle = cycle.get(i);
-            for (int j = 0; j < eachcycle.length() - 1; j++) {
-                _findForward.put(eachcycle.charAt(j), eachcycle.charAt(j + 1));
-                _findBackward.put(eachcycle.charAt(j + 1), eachcycle.charAt(j));
-            }
-            _findForward.put(eachcycle.charAt(eachcycle.length() - 1),
-                    eachcycle.charAt(0));
-            _findBackward.put(eachcycle.charAt(0),
-                    eachcycle.charAt(eachcycle.length() - 1));
+    }
+
+    /**
+     * A permutation of ALPHABET taking each index i to FORWARD[i], whose
+     * inverse takes each index to INVERSE[i].  The arrays must have one
+     * entry per character of ALPHABET and become mine.
+     */
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+        int n = alphabet.size();
+        if (forward.length != n || inverse.length != n) {
+            throw error("wrong size of permutation");
         }
-        for (int a = 0; a < _alphabet.size(); a++) {
-            if (!_findForward.containsKey(_alphabet.toChar(a))) {
-                _findForward.put(_alphabet.toChar(a), _alphabet.toChar(a));
-            }
-            if (!_findBackward.containsKey(_alphabet.toChar(a))) {
-                _findBackward.put(_alphabet.toChar(a), _alphabet.toChar(a));
+        for (int a = 0; a < n; a += 1) {
+            if (forward[a] < 0 || forward[a] >= n
+                    || inverse[forward[a]] != a) {
+                throw error("wrong format of permutation:"
+                        + "tables are not inverses");
             }
         }
     }
 
     /**
-     * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     * c0c1...cm.
+     * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE
+     * holds the indices c0c1...cm in its first LEN entries.
      */
-    private void addCycle(String cycle) {
-        _cycles += cycle;
+    private void addCycle(int[] cycle, int len) {
+        for (int j = 0; j < len; j += 1) {
+            int from = cycle[j];
+            int to = cycle[(j + 1) % len];
+            _forward[from] = to;
+            _inverse[to] = from;
+        }
     }
 
     /**
      * Return the value of P modulo the size of this permutation.
      */
     final int wrap(int p) {
-        int r = p % size();
+        int n = _forward.length;
+        if (p >= 0 && p < n) {
+            return p;
+        }
+        int r = p % n;
         if (r < 0) {
-            r += size();
+            r += n;
         }
         return r;
     }
@@ -82,7 +105,7 @@ class Permutation {
      * Returns the size of the alphabet I permute.
      */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /**
@@ -90,8 +113,7 @@ class Permutation {
      * alphabet size.
      */
     int permute(int p) {
-        char findf = _findForward.get(_alphabet.toChar(wrap(p)));
-        return _alphabet.toInt(findf);
+        return _forward[wrap(p)];
     }
 
     /**
@@ -99,8 +121,7 @@ class Permutation {
      * to  C modulo the alphabet size.
      */
     int invert(int c) {
-        char findb = _findBackward.get(_alphabet.toChar(wrap(c)));
-        return _alphabet.toInt(findb);
+        return _inverse[wrap(c)];
     }
 
     /**
@@ -108,16 +129,14 @@ class Permutation {
      * in ALPHABET, and converting the result to a character of ALPHABET.
      */
     char permute(char p) {
-        char findf1 = _alphabet.toChar(wrap(_alphabet.toInt(p)));
-        return _findForward.get(findf1);
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /**
      * Return the result of applying the inverse of this permutation to C.
      */
     int invert(char c) {
-        char findb1 = _alphabet.toChar(wrap(_alphabet.toInt(c)));
-        return _findBackward.get(findb1);
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /**
@@ -132,11 +151,8 @@ class Permutation {
      * permutation for which no value maps to itself).
      */
     boolean derangement() {
-        for (int a = 0; a < _alphabet.size(); a++) {
-            if (_alphabet.toChar(a)
-                    == _findForward.get(_alphabet.toChar(a))
-                    || _alphabet.toChar(a)
-                    == _findBackward.get(_alphabet.toChar(a))) {
+        for (int a = 0; a < _forward.length; a += 1) {
+            if (_forward[a] == a) {
                 return false;
             }
         }
@@ -149,17 +165,17 @@ class Permutation {
     private Alphabet _alphabet;
 
     /**
-     * Cycles of this permutation.
+     * Cycles of this permutation, or null if it was given as tables.
      */
     private String _cycles;
 
     /**
-     * HashMap for finding forward.
+     * Index of the image of each index of my alphabet.
      */
-    private HashMap<Character, Character> _findForward = new HashMap<>();
+    private final int[] _forward;
 
     /**
-     * HashMap for finding backward.
+     * Index of the preimage of each index of my alphabet.
      */
-    private HashMap<Character, Character> _findBackward = new HashMap<>();
+    private final int[] _inverse;
 }
@@ -169,4 +169,20 @@ public class PermutationTest {
                 new CharacterRange('A', 'L'));
         assertEquals(true, p4.derangement());
     }
+
+    @Test
+    public void testWrapIndices() {
+        Permutation p = new Permutation("(ABC) (DE)",
+                new CharacterRange('A', 'F'));
+        assertEquals(1, p.permute(0));
+        assertEquals(1, p.permute(6));
+        assertEquals(4, p.permute(-3));
+        assertEquals(2, p.invert(-6));
+        assertEquals(5, p.invert(11));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnclosedCycle() {
+        new Permutation("(AB) (CD", new CharacterRange('A', 'F'));
+    }
 }
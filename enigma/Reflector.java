@@ -14,15 +14,7 @@ class Reflector extends FixedRotor {
      * is PERM.
      */
     Reflector(String name, Permutation perm) {
-        super(name, perm);
-        if (!perm.derangement()) {
-            throw error("Reflectors should be fully deranged!");
-        }
-    }
-
-    @Override
-    boolean reflecting() {
-        return true;
+        super(RotorSpec.reflector(name, perm));
     }
 
 
@@ -2,7 +2,8 @@ package enigma;
 
 
 /**
- * Superclass that represents a rotor in the enigma machine.
+ * Superclass that represents a rotor in the enigma machine: a RotorSpec
+ * together with a current setting.
  *
  * @author Wendi Zhang
  */
@@ -12,71 +13,84 @@ class Rotor {
      * A rotor named NAME whose permutation is given by PERM.
      */
     Rotor(String name, Permutation perm) {
-        _name = name.toUpperCase();
-        _permutation = perm;
+        this(RotorSpec.fixed(name, perm));
+    }
+
+    /**
+     * A rotor described by SPEC, initially at setting 0.
+     */
+    Rotor(RotorSpec spec) {
+        _spec = spec;
+    }
+
+    /**
+     * Return my description.
+     */
+    RotorSpec spec() {
+        return _spec;
     }
 
     /**
      * Return my name.
      */
     String name() {
-        return _name;
+        return _spec.name();
     }
 
     /**
      * Return my alphabet.
      */
     Alphabet alphabet() {
-        return _permutation.alphabet();
+        return _spec.alphabet();
     }
 
     /**
      * Return my permutation.
      */
     Permutation permutation() {
-        return _permutation;
+        return _spec.permutation();
     }
 
     /**
      * Return the size of my alphabet.
      */
     int size() {
-        return _permutation.size();
+        return _spec.size();
     }
 
     /**
      * Return true iff I have a ratchet and can move.
      */
     boolean rotates() {
-        return false;
+        return _spec.rotates();
     }
 
     /**
      * Return true iff I reflect.
      */
     boolean reflecting() {
-        return false;
+        return _spec.reflecting();
     }
 
     /**
      * Return my current setting.
      */
     int setting() {
-        return _permutation.wrap(setting);
+        return setting;
     }
 
     /**
      * Set setting() to POSN.
      */
     void set(int posn) {
-        setting = posn;
+        setting = permutation().wrap(posn);
     }
 
     /**
      * Set setting() to character CPOSN.
      */
     void set(char cposn) {
-        setting = alphabet().toInt(cposn);
+        set(alphabet().toInt(cposn));
     }
 
     /**
@@ -84,11 +98,7 @@ class Rotor {
      * according to my permutation.
      */
     int convertForward(int p) {
-        int currentSetting = setting();
-        int contactEnter = _permutation.wrap(p + currentSetting);
-        int contactExit = _permutation.permute(contactEnter);
-        int positionExit = _permutation.wrap(contactExit - currentSetting);
-        return positionExit;
+        return _spec.convertForward(setting, p);
     }
 
     /**
@@ -96,11 +106,7 @@ class Rotor {
      * according to the inverse of my permutation.
      */
     int convertBackward(int e) {
-        int currentSetting = setting();
-        int contactEnter = _permutation.wrap(e + currentSetting);
-        int contactExit = _permutation.invert(contactEnter);
-        int positionExit = _permutation.wrap(contactExit - currentSetting);
-        return positionExit;
+        return _spec.convertBackward(setting, e);
     }
 
     /**
@@ -108,32 +114,30 @@ class Rotor {
      * to advance.
      */
     boolean atNotch() {
-        return false;
+        return _spec.notchAt(setting);
     }
 
     /**
      * Advance me one position, if possible. By default, does nothing.
      */
     void advance() {
+        if (rotates()) {
+            set(setting + 1);
+        }
     }
 
     @Override
     public String toString() {
-        return "Rotor " + _name;
+        return _spec.toString();
     }
 
     /**
-     * My name.
-     */
-    private final String _name;
-
-    /**
-     * The permutation implemented by this rotor in its 0 position.
+     * My wiring and notches.
      */
-    private Permutation _permutation;
+    private final RotorSpec _spec;
 
     /**
-     * My setting.
+     * My setting, always in the range 0..size()-1.
      */
     protected int setting;
 
@@ -0,0 +1,387 @@
+package enigma;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * The immutable description of a rotor: its name, wiring, notches, and
+ * whether it rotates or reflects.  A RotorSpec carries no setting, so
+ * one instance is shared by every machine (and every Rotor) that uses
+ * the rotor; the settings live with the users.  Equal specs are
+ * interned, so loading the same catalog twice does not duplicate its
+ * tables; a spec no longer used by any machine may still be collected.
+ *
+ * @author Wendi Zhang
+ */
+final class RotorSpec {
+
+    /**
+     * Return the spec of a rotating rotor named NAME whose permutation
+     * at setting 0 is PERM and whose notches are the characters of
+     * NOTCHES.
+     */
+    static RotorSpec moving(String name, Permutation perm, String notches) {
+        boolean[] notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            notchAt[perm.alphabet().toInt(notches.charAt(i))] = true;
+        }
+        return intern(new RotorSpec(name, perm, notchAt, true, false));
+    }
+
+    /**
+     * Return the spec of a non-moving rotor named NAME whose permutation
+     * at setting 0 is PERM.
+     */
+    static RotorSpec fixed(String name, Permutation perm) {
+        return intern(new RotorSpec(name, perm, new boolean[perm.size()],
+                false, false));
+    }
+
+    /**
+     * Return the spec of a reflector named NAME with permutation PERM,
+     * which must be a derangement.
+     */
+    static RotorSpec reflector(String name, Permutation perm) {
+        if (!perm.derangement()) {
+            throw error("Reflectors should be fully deranged!");
+        }
+        return intern(new RotorSpec(name, perm, new boolean[perm.size()],
+                false, true));
+    }
+
+    /**
+     * Return the spec named NAME with permutation PERM, which ROTATES
+     * and/or is REFLECTING as indicated, and whose notch positions are
+     * those at which NOTCHAT is true, as described by a compiled
+     * configuration.
+     */
+    static RotorSpec restore(String name, Permutation perm,
+                             boolean[] notchAt, boolean rotates,
+                             boolean reflecting) {
+        if (reflecting && (rotates || !perm.derangement())) {
+            throw error("Reflectors should be fully deranged!");
+        }
+        return intern(new RotorSpec(name, perm, notchAt, rotates,
+                reflecting));
+    }
+
+    /**
+     * Return the canonical spec equal to SPEC.
+     */
+    private static RotorSpec intern(RotorSpec spec) {
+        synchronized (INTERNED) {
+            WeakReference<RotorSpec> ref = INTERNED.get(spec);
+            RotorSpec known = ref == null ? null : ref.get();
+            if (known != null) {
+                return known;
+            }
+            INTERNED.put(spec, new WeakReference<>(spec));
+            return spec;
+        }
+    }
+
+    /**
+     * A spec named NAME with permutation PERM and notches at the
+     * positions where NOTCHAT is true, which ROTATES and/or is
+     * REFLECTING as indicated.
+     */
+    private RotorSpec(String name, Permutation perm, boolean[] notchAt,
+                      boolean rotates, boolean reflecting) {
+        _name = name.toUpperCase();
+        _permutation = perm;
+        _rotates = rotates;
+        _reflecting = reflecting;
+        int n = perm.size();
+        _notchAt = notchAt;
+        _notchCounts = new int[n + 1];
+        for (int i = 0; i < n; i += 1) {
+            _notchCounts[i + 1] = _notchCounts[i] + (_notchAt[i] ? 1 : 0);
+        }
+        _notchDistance = new int[n];
+        int next = -1;
+        for (int k = 2 * n - 1; k >= 0; k -= 1) {
+            if (_notchAt[k % n]) {
+                next = k;
+            }
+            if (k < n) {
+                _notchDistance[k] = next < 0 ? -1 : next - k;
+            }
+        }
+    }
+
+    /**
+     * Return the number of bytes my conversion tables take, whether or
+     * not they have been built yet, or -1 if my alphabet is too large to
+     * tabulate.
+     */
+    long tableBytes() {
+        int n = size();
+        if (n > MAX_TABLE_SIZE) {
+            return -1;
+        }
+        return 2L * n * (4L * n + ARRAY_OVERHEAD);
+    }
+
+    /**
+     * Build my conversion tables, unless they exist already or my
+     * alphabet is too large (see tableBytes).  Tables are kept for as
+     * long as I am, and shared by all my users.
+     */
+    synchronized void tabulate() {
+        int n = size();
+        if (_forwardTable != null || n > MAX_TABLE_SIZE) {
+            return;
+        }
+        Permutation perm = _permutation;
+        int[][] forward = new int[n][n], backward = new int[n][n];
+        for (int s = 0; s < n; s += 1) {
+            for (int p = 0; p < n; p += 1) {
+                int contact = perm.wrap(p + s);
+                forward[s][p] = perm.wrap(perm.permute(contact) - s);
+                backward[s][p] = perm.wrap(perm.invert(contact) - s);
+            }
+        }
+        _backwardTable = backward;
+        _forwardTable = forward;
+    }
+
+    /**
+     * Return my name.
+     */
+    String name() {
+        return _name;
+    }
+
+    /**
+     * Return my alphabet.
+     */
+    Alphabet alphabet() {
+        return _permutation.alphabet();
+    }
+
+    /**
+     * Return my permutation at setting 0.
+     */
+    Permutation permutation() {
+        return _permutation;
+    }
+
+    /**
+     * Return the size of my alphabet.
+     */
+    int size() {
+        return _permutation.size();
+    }
+
+    /**
+     * Return true iff I have a ratchet and can move.
+     */
+    boolean rotates() {
+        return _rotates;
+    }
+
+    /**
+     * Return true iff I reflect.
+     */
+    boolean reflecting() {
+        return _reflecting;
+    }
+
+    /**
+     * Return the conversion of P (in the range 0..size()-1) by my
+     * permutation when I am at SETTING.
+     */
+    int convertForward(int setting, int p) {
+        int[][] table = _forwardTable;
+        if (table != null) {
+            return table[setting][p];
+        }
+        int contactExit = _permutation.permute(_permutation.wrap(p + setting));
+        return _permutation.wrap(contactExit - setting);
+    }
+
+    /**
+     * Return the conversion of E (in the range 0..size()-1) by the
+     * inverse of my permutation when I am at SETTING.
+     */
+    int convertBackward(int setting, int e) {
+        int[][] table = _backwardTable;
+        if (table != null) {
+            return table[setting][e];
+        }
+        int contactExit = _permutation.invert(_permutation.wrap(e + setting));
+        return _permutation.wrap(contactExit - setting);
+    }
+
+    /**
+     * Return the table of forward conversions at SETTING, indexed by
+     * contact position, or null if I have not been tabulated.  The
+     * caller must not modify it.
+     */
+    int[] forwardRow(int setting) {
+        int[][] table = _forwardTable;
+        return table == null ? null : table[setting];
+    }
+
+    /**
+     * Return the table of backward conversions at SETTING, like
+     * forwardRow.
+     */
+    int[] backwardRow(int setting) {
+        int[][] table = _backwardTable;
+        return table == null ? null : table[setting];
+    }
+
+    /**
+     * Returns true iff my setting POSN is a notch position.
+     */
+    boolean notchAt(int posn) {
+        return _notchAt[posn];
+    }
+
+    /**
+     * Return how many moves it takes me to get from SETTING to a notch
+     * position (0 if SETTING is one), or -1 if I have no notches.
+     */
+    int notchDistance(int setting) {
+        return _notchDistance[setting];
+    }
+
+    /**
+     * Return how many of the STEPS consecutive settings beginning with
+     * START (and wrapping around) are notch positions.
+     */
+    long notchesPassed(int start, long steps) {
+        int n = size();
+        int end = start + (int) (steps % n);
+        long count = (steps / n) * _notchCounts[n];
+        if (end <= n) {
+            count += _notchCounts[end] - _notchCounts[start];
+        } else {
+            count += _notchCounts[n] - _notchCounts[start]
+                    + _notchCounts[end - n];
+        }
+        return count;
+    }
+
+    /**
+     * Returns true iff two consecutive settings of mine (wrapping
+     * around) are both notch positions.
+     */
+    boolean hasAdjacentNotches() {
+        int n = size();
+        for (int i = 0; i < n; i += 1) {
+            if (_notchAt[i] && _notchAt[(i + 1) % n]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RotorSpec)) {
+            return false;
+        }
+        RotorSpec other = (RotorSpec) obj;
+        if (!_name.equals(other._name) || _rotates != other._rotates
+                || _reflecting != other._reflecting
+                || size() != other.size()
+                || !Arrays.equals(_notchAt, other._notchAt)) {
+            return false;
+        }
+        Alphabet alpha = alphabet(), otherAlpha = other.alphabet();
+        for (int i = 0; i < size(); i += 1) {
+            if (alpha.toChar(i) != otherAlpha.toChar(i)
+                    || _permutation.permute(i)
+                    != other._permutation.permute(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = _name.hashCode() * 31 + size();
+        for (int i = 0; i < size(); i += 1) {
+            hash = hash * 31 + _permutation.permute(i);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Rotor " + _name;
+    }
+
+    /**
+     * Alphabets of at most this many characters may get precomputed
+     * conversion tables; larger ones convert arithmetically.
+     */
+    static final int MAX_TABLE_SIZE = 256;
+
+    /**
+     * Approximate bytes of memory used by an array besides its elements.
+     */
+    private static final int ARRAY_OVERHEAD = 16;
+
+    /**
+     * Canonical instances of the specs still in use, held weakly so that
+     * they and their tables are dropped with the last machine using them.
+     */
+    private static final Map<RotorSpec, WeakReference<RotorSpec>> INTERNED =
+            new WeakHashMap<>();
+
+    /**
+     * My name.
+     */
+    private final String _name;
+
+    /**
+     * The permutation implemented by this rotor in its 0 position.
+     */
+    private final Permutation _permutation;
+
+    /**
+     * True iff I rotate.
+     */
+    private final boolean _rotates;
+
+    /**
+     * True iff I am a reflector.
+     */
+    private final boolean _reflecting;
+
+    /**
+     * Whether each setting of mine is a notch position.
+     */
+    private final boolean[] _notchAt;
+
+    /**
+     * _notchCounts[k] is the number of notch positions among my settings
+     * 0..k-1.
+     */
+    private final int[] _notchCounts;
+
+    /**
+     * The value of notchDistance at each setting.
+     */
+    private final int[] _notchDistance;
+
+    /**
+     * Forward conversions indexed by setting and then contact position,
+     * or null until tabulate builds them.  Set after _backwardTable.
+     */
+    private volatile int[][] _forwardTable;
+
+    /**
+     * Backward conversions indexed like _forwardTable, or null.
+     */
+    private volatile int[][] _backwardTable;
+
+}
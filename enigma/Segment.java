@@ -0,0 +1,215 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * One settings line and the message lines that follow it up to the next
+ * settings line, buffered so that it can be converted independently of
+ * the rest of the input.  A segment is filled with normalized letters by
+ * one thread, converted by calling it (possibly on another thread), and
+ * then written out by the first thread.  An error in setting up or
+ * converting, or in reading the input after the letters added so far,
+ * is kept until the segment is written, so that errors can be reported
+ * in input order, after the same output as Main's serial conversion
+ * would have written before them.
+ *
+ * @author Wendi Zhang
+ */
+class Segment implements Callable<Segment> {
+
+    /**
+     * An empty segment for the settings line SETTINGS, whose machine
+     * comes from POOL.
+     */
+    Segment(MachinePool pool, String settings) {
+        _pool = pool;
+        _settings = settings;
+    }
+
+    /**
+     * Add the LEN letters of BUF starting at OFF to the current line, as
+     * one piece, which is converted (or fails) as a whole, as Main's
+     * serial conversion converts each piece of a line it reads.
+     */
+    void append(char[] buf, int off, int len) {
+        if (_length + len > _letters.length) {
+            _letters = Arrays.copyOf(_letters,
+                    Math.max(_length + len, 2 * _letters.length));
+        }
+        System.arraycopy(buf, off, _letters, _length, len);
+        _length += len;
+        if (_pieces == _pieceEnds.length) {
+            _pieceEnds = Arrays.copyOf(_pieceEnds, 2 * _pieces);
+        }
+        _pieceEnds[_pieces] = _length;
+        _pieces += 1;
+    }
+
+    /**
+     * End the current line.
+     */
+    void endLine() {
+        if (_lines == _lineEnds.length) {
+            _lineEnds = Arrays.copyOf(_lineEnds, 2 * _lines);
+        }
+        _lineEnds[_lines] = _length;
+        _lines += 1;
+    }
+
+    /**
+     * Record EXCP, an error in reading my input after the letters added
+     * so far, for writeTo to report once it has written them.
+     */
+    void fail(EnigmaException excp) {
+        _readError = excp;
+    }
+
+    /**
+     * Return the number of letters added to me.
+     */
+    int length() {
+        return _length;
+    }
+
+    /**
+     * Set up a machine for my settings line and convert my letters with
+     * it, piece by piece, recording the first error.  Returns me.
+     */
+    @Override
+    public Segment call() {
+        try {
+            _machine = _pool.acquire(_settings);
+            if (!_settings.equals("*") && !_settings.startsWith("* ")) {
+                throw error("wrong format of input");
+            }
+            _setUp = true;
+            for (int i = 0; i < _pieces; i += 1) {
+                int end = _pieceEnds[i];
+                _machine.convert(_letters, _converted, end - _converted,
+                        _letters, _converted);
+                _converted = end;
+            }
+        } catch (EnigmaException excp) {
+            _error = excp;
+        }
+        return this;
+    }
+
+    /**
+     * Write my converted lines to OUT, leaving the last line unended if
+     * endLine was not called for it, and then throw the error recorded
+     * by call or fail, if any.  As in Main's serial conversion, which
+     * writes each piece of a line as soon as it is converted, the output
+     * stops before the piece whose conversion failed, or before any
+     * letters if my machine could not be set up.
+     */
+    void writeTo(GroupWriter out) {
+        if (!_setUp) {
+            throw _error;
+        }
+        int start = 0;
+        for (int i = 0; i < _lines && _lineEnds[i] <= _converted; i += 1) {
+            out.write(_letters, start, _lineEnds[i] - start);
+            out.endLine();
+            start = _lineEnds[i];
+        }
+        out.write(_letters, start, _converted - start);
+        if (_error != null) {
+            throw _error;
+        }
+        if (_readError != null) {
+            throw _readError;
+        }
+    }
+
+    /**
+     * Return the machine that converted me, which has converted all of my
+     * letters.
+     */
+    Machine machine() {
+        return _machine;
+    }
+
+    /**
+     * Give my machine back to its pool.
+     */
+    void release() {
+        if (_machine != null) {
+            _pool.release(_machine);
+            _machine = null;
+        }
+    }
+
+    /**
+     * Initial capacity of my buffers.
+     */
+    private static final int INITIAL_SIZE = 16;
+
+    /**
+     * Source of my machine.
+     */
+    private final MachinePool _pool;
+
+    /**
+     * My settings line.
+     */
+    private final String _settings;
+
+    /**
+     * The letters of all my lines, one after the other.
+     */
+    private char[] _letters = new char[INITIAL_SIZE];
+
+    /**
+     * The number of letters in _letters.
+     */
+    private int _length;
+
+    /**
+     * _lineEnds[i] is the number of letters in lines 0 .. i.
+     */
+    private int[] _lineEnds = new int[INITIAL_SIZE];
+
+    /**
+     * The number of lines ended.
+     */
+    private int _lines;
+
+    /**
+     * _pieceEnds[i] is the number of letters in pieces 0 .. i.
+     */
+    private int[] _pieceEnds = new int[INITIAL_SIZE];
+
+    /**
+     * The number of pieces added.
+     */
+    private int _pieces;
+
+    /**
+     * True once my machine has been set up.
+     */
+    private boolean _setUp;
+
+    /**
+     * The number of letters converted without error.
+     */
+    private int _converted;
+
+    /**
+     * The machine for my settings, once set up, or null.
+     */
+    private Machine _machine;
+
+    /**
+     * The error that stopped my conversion, or null.
+     */
+    private EnigmaException _error;
+
+    /**
+     * The error that stopped the reading of my letters, or null.
+     */
+    private EnigmaException _readError;
+}
@@ -0,0 +1,189 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+import static enigma.TestUtils.*;
+
+/**
+ * The suite of all JUnit tests for the Segment class.
+ *
+ * @author Wendi Zhang
+ */
+public class SegmentTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String SETTING1 =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    private MachinePool pool =
+            new MachinePool(new Machine(UPPER, 5, 3, allRotor1), 2);
+
+    /**
+     * Return a segment for SETTINGS holding the message LINES.
+     */
+    private Segment segment(String settings, String... lines) {
+        Segment result = new Segment(pool, settings);
+        for (String line : lines) {
+            result.append(line.toCharArray(), 0, line.length());
+            result.endLine();
+        }
+        return result;
+    }
+
+    /**
+     * A GroupWriter that keeps what is written to it.
+     */
+    private static class StringGroupWriter extends GroupWriter {
+        @Override
+        void put(char c) {
+            _text.append(c);
+        }
+
+        @Override
+        void flush() {
+        }
+
+        @Override
+        public String toString() {
+            return _text.toString();
+        }
+
+        /**
+         * Everything written so far.
+         */
+        private final StringBuilder _text = new StringBuilder();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvertsLines() {
+        Segment seg = segment(SETTING1, "FROMHISSHOULDER", "HIAWATHA");
+        assertSame(seg, seg.call());
+        StringGroupWriter out = new StringGroupWriter();
+        seg.writeTo(out);
+        seg.release();
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp(SETTING1);
+        StringGroupWriter expected = new StringGroupWriter();
+        for (String line : new String[] {"FROMHISSHOULDER", "HIAWATHA"}) {
+            char[] letters = line.toCharArray();
+            mach.convert(letters, 0, letters.length, letters, 0);
+            expected.write(letters, 0, letters.length);
+            expected.endLine();
+        }
+        assertEquals(expected.toString(), out.toString());
+        assertTrue(out.toString().startsWith("QVPQS OKOIL PUBKJ"));
+    }
+
+    @Test
+    public void testFailurePartWayThroughLine() {
+        char[] line = new char[20001];
+        for (int i = 0; i < line.length; i += 1) {
+            line[i] = (char) ('A' + i % 26);
+        }
+        line[line.length - 1] = '1';
+        Segment seg = new Segment(pool, SETTING1);
+        seg.append("FROMHIS".toCharArray(), 0, 7);
+        seg.endLine();
+        for (int start = 0; start < line.length; start += 8192) {
+            seg.append(line, start, Math.min(8192, line.length - start));
+        }
+        seg.endLine();
+        seg.call();
+        StringGroupWriter out = new StringGroupWriter();
+        try {
+            seg.writeTo(out);
+            fail("bad letter not reported");
+        } catch (EnigmaException excp) {
+            seg.release();
+        }
+        Machine mach = new Machine(UPPER, 5, 3, allRotor1);
+        mach.setUp(SETTING1);
+        StringGroupWriter expected = new StringGroupWriter();
+        char[] letters = "FROMHIS".toCharArray();
+        mach.convert(letters, 0, 7, letters, 0);
+        expected.write(letters, 0, 7);
+        expected.endLine();
+        letters = Arrays.copyOf(line, 2 * 8192);
+        mach.convert(letters, 0, letters.length, letters, 0);
+        expected.write(letters, 0, letters.length);
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void testReadFailure() {
+        Segment seg = segment(SETTING1, "FROMHISSHOULDER");
+        seg.append("HIAWATHA".toCharArray(), 0, 8);
+        seg.fail(error("bad input"));
+        seg.call();
+        StringGroupWriter out = new StringGroupWriter();
+        try {
+            seg.writeTo(out);
+            fail("read error not reported");
+        } catch (EnigmaException excp) {
+            assertEquals("bad input", excp.getMessage());
+        }
+        assertEquals("QVPQS OKOIL PUBKJ " + System.lineSeparator()
+                + "ZPISF XDW", out.toString());
+    }
+
+    @Test
+    public void testSetUpFailureWritesNothing() {
+        Segment seg = segment("* B BETA III IV AXLE", "", "HIAWATHA");
+        seg.call();
+        StringGroupWriter out = new StringGroupWriter();
+        try {
+            seg.writeTo(out);
+            fail("bad settings not reported");
+        } catch (EnigmaException excp) {
+            assertEquals("", out.toString());
+        }
+    }
+
+    @Test
+    public void testLaterFailureReportedInOrder() throws Exception {
+        Segment first = segment(SETTING1, "FROMHISSHOULDER");
+        Segment second = segment("* B BETA III IV AXLE", "HIAWATHA");
+        Segment third = segment(SETTING1, "FROMHISSHOULDER");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Segment> failed = executor.submit(second);
+            failed.get();
+            Future<Segment> done = executor.submit(first);
+            Future<Segment> after = executor.submit(third);
+            StringGroupWriter out = new StringGroupWriter();
+            done.get().writeTo(out);
+            first.release();
+            String before = out.toString();
+            assertTrue(before.startsWith("QVPQS OKOIL PUBKJ"));
+            try {
+                failed.get().writeTo(out);
+                fail("error in second segment not reported");
+            } catch (EnigmaException excp) {
+                second.release();
+            }
+            assertEquals(before, out.toString());
+            after.get().release();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
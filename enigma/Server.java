@@ -0,0 +1,228 @@
+package enigma;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * A long-running Enigma server, which spares its clients the cost of
+ * starting a JVM and reading a configuration for every run.  Each
+ * connection carries one run of Main, as described in Frames, and is
+ * handled on its own thread with machines from a pool kept for its
+ * configuration file.  Configurations are read when the server starts
+ * or when a client first names them, and read again when a client names
+ * one that has changed since; only the MAX_CONFIGS most recently named
+ * are kept.
+ *
+ * @author Wendi Zhang
+ */
+class Server {
+
+    /**
+     * A server that has read the configuration files named in CONFIGS.
+     */
+    Server(String... configs) {
+        for (String config : configs) {
+            pool(config);
+        }
+    }
+
+    /**
+     * Accept and handle connections at ADDRESS (as for Frames.address)
+     * until the process is stopped.
+     */
+    void serve(SocketAddress address) {
+        serve(listen(address));
+    }
+
+    /**
+     * Return a channel listening for connections at ADDRESS.  A Unix
+     * domain socket is removed when the process exits.
+     */
+    static ServerSocketChannel listen(SocketAddress address) {
+        ServerSocketChannel listener;
+        try {
+            if (address instanceof UnixDomainSocketAddress) {
+                Path path = ((UnixDomainSocketAddress) address).getPath();
+                listener = ServerSocketChannel.open(
+                        StandardProtocolFamily.UNIX);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException excp) {
+                        /* Nothing more to do while exiting. */
+                    }
+                }));
+            } else {
+                listener = ServerSocketChannel.open();
+            }
+            listener.bind(address);
+        } catch (IOException excp) {
+            throw error("could not listen on %s", address);
+        }
+        return listener;
+    }
+
+    /**
+     * Accept and handle connections on LISTENER until it is closed.
+     */
+    void serve(ServerSocketChannel listener) {
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        try {
+            while (listener.isOpen()) {
+                try {
+                    SocketChannel connection = listener.accept();
+                    handlers.execute(() -> handle(connection));
+                } catch (IOException excp) {
+                    if (listener.isOpen()) {
+                        System.err.printf("Error: %s%n", excp.getMessage());
+                    }
+                }
+            }
+        } finally {
+            handlers.shutdown();
+        }
+    }
+
+    /**
+     * Carry out the run requested on CONNECTION and close it.  Any input
+     * left unread after an error is drained first, so that closing does
+     * not reset the connection before the client has the reply.
+     */
+    private void handle(SocketChannel connection) {
+        try (connection) {
+            ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+            if (Frames.readHeader(connection, header) != Frames.CONFIG) {
+                return;
+            }
+            String config = Frames.readText(connection, header.getInt(1));
+            GroupWriter output = new ChannelWriter(
+                    new Frames.Output(connection), Charset.defaultCharset());
+            int status = 0;
+            try {
+                MessageReader input = new ChannelReader(
+                        new Frames.Input(connection),
+                        Charset.defaultCharset());
+                Main session = new Main(pool(config), input, output);
+                try {
+                    session.processSession();
+                } finally {
+                    output.flush();
+                }
+            } catch (EnigmaException excp) {
+                Frames.write(connection, Frames.ERROR, excp.getMessage());
+                status = 1;
+            }
+            Frames.write(connection, Frames.EXIT,
+                    ByteBuffer.wrap(new byte[] { (byte) status }));
+            connection.shutdownOutput();
+            ByteBuffer rest = ByteBuffer.allocate(Frames.MAX_DATA);
+            while (connection.read(rest.clear()) >= 0) {
+                continue;
+            }
+        } catch (IOException | EnigmaException excp) {
+            /* The client has gone; there is no one left to tell. */
+            return;
+        }
+    }
+
+    /**
+     * Return the pool of machines for the configuration file CONFIG,
+     * reading the file if it has not been read since it last changed.
+     */
+    private MachinePool pool(String config) {
+        Path path = Paths.get(config).toAbsolutePath().normalize();
+        String key = path.toString();
+        String version;
+        try {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(path, BasicFileAttributes.class);
+            version = attributes.lastModifiedTime() + " "
+                    + attributes.size();
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+        synchronized (_pools) {
+            Loaded loaded = _pools.get(key);
+            if (loaded != null && loaded._version.equals(version)) {
+                return loaded._pool;
+            }
+        }
+        MachinePool pool = new MachinePool(Main.readConfig(key), MAX_IDLE);
+        synchronized (_pools) {
+            _pools.put(key, new Loaded(pool, version));
+            if (_pools.size() > MAX_CONFIGS) {
+                Iterator<Loaded> lru = _pools.values().iterator();
+                lru.next();
+                lru.remove();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Return the number of configurations I am keeping.
+     */
+    int configs() {
+        synchronized (_pools) {
+            return _pools.size();
+        }
+    }
+
+    /**
+     * The machines for one version of a configuration file.
+     */
+    private static final class Loaded {
+
+        /**
+         * Machines in POOL, read from the version of their file that
+         * VERSION describes.
+         */
+        Loaded(MachinePool pool, String version) {
+            _pool = pool;
+            _version = version;
+        }
+
+        /**
+         * The machines.
+         */
+        private final MachinePool _pool;
+
+        /**
+         * The modification time and size of the file read.
+         */
+        private final String _version;
+    }
+
+    /**
+     * Most idle machines kept for each configuration.
+     */
+    private static final int MAX_IDLE = 64;
+
+    /**
+     * Most configurations kept at once.
+     */
+    static final int MAX_CONFIGS = 64;
+
+    /**
+     * Machine pools by absolute configuration file name, least recently
+     * used first.
+     */
+    private final LinkedHashMap<String, Loaded> _pools =
+            new LinkedHashMap<>(16, 0.75f, true);
+}
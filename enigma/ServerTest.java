@@ -0,0 +1,204 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * The suite of all JUnit tests for the Server and Client classes.
+ *
+ * @author Wendi Zhang
+ */
+public class ServerTest {
+
+    /**
+     * Testing time limit.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String CONFIG = String.join("\n",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ", " 5 3",
+            " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+            " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+            " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
+            " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+            " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+            "   (RX) (SZ) (TV)", "");
+
+    private static final String SETTING1 =
+            "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Return a temporary file, deleted on exit, holding TEXT.
+     */
+    private static File file(String suffix, String text) throws IOException {
+        File file = File.createTempFile("enigma", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Return a channel on which SERVER is listening on an unused
+     * loopback port, serving on a separate thread until it is closed.
+     */
+    private static ServerSocketChannel start(Server server) {
+        ServerSocketChannel listener = Server.listen(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0));
+        Thread thread = new Thread(() -> server.serve(listener));
+        thread.setDaemon(true);
+        thread.start();
+        return listener;
+    }
+
+    /**
+     * Return the port on which LISTENER listens.
+     */
+    private static String port(ServerSocketChannel listener)
+        throws IOException {
+        return Integer.toString(((InetSocketAddress)
+                listener.getLocalAddress()).getPort());
+    }
+
+    /**
+     * Return the output of a run of Client with the configuration file
+     * CONFIG and input INPUT against the server on LISTENER, checking
+     * that it succeeds.
+     */
+    private static String run(ServerSocketChannel listener, File config,
+                              String input) throws IOException {
+        File in = file(".inp", input);
+        File out = file(".out", "");
+        Client client = new Client(config.getPath(), in.getPath(),
+                out.getPath());
+        assertEquals(0, client.run(port(listener)));
+        return new String(Files.readAllBytes(out.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File config = file(".conf", CONFIG);
+        try (ServerSocketChannel listener = start(new Server())) {
+            String input = SETTING1 + "\nFROM HIS SHOULDER HIAWATHA\n"
+                    + SETTING1 + "\nFROMHISSHOULDER\n";
+            assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + NL
+                    + "QVPQS OKOIL PUBKJ " + NL, run(listener, config, input));
+        }
+    }
+
+    @Test
+    public void testErrorAndExitFrames() throws IOException {
+        File config = file(".conf", CONFIG);
+        try (ServerSocketChannel listener = start(new Server());
+             SocketChannel connection = Frames.connect(
+                     listener.getLocalAddress())) {
+            Frames.write(connection, Frames.CONFIG, config.getPath());
+            Frames.write(connection, Frames.DATA, SETTING1
+                    + "\nFROMHISSHOULDER\n* B BETA III IV AXLE\nHI\n");
+            Frames.write(connection, Frames.END, ByteBuffer.allocate(0));
+            ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            int type;
+            while ((type = Frames.readHeader(connection, header))
+                   == Frames.DATA) {
+                output.write(Frames.readText(connection, header.getInt(1))
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals("QVPQS OKOIL PUBKJ " + NL, output.toString("UTF-8"));
+            assertEquals(Frames.ERROR, type);
+            assertTrue(Frames.readText(connection, header.getInt(1))
+                    .length() > 0);
+            assertEquals(Frames.EXIT, Frames.readHeader(connection, header));
+            assertEquals(1, header.getInt(1));
+            ByteBuffer status = ByteBuffer.allocate(1);
+            assertTrue(Frames.readFully(connection, status));
+            assertEquals(1, status.get(0));
+            assertEquals(-1, Frames.readHeader(connection, header));
+        }
+    }
+
+    @Test
+    public void testMissingConfig() throws IOException {
+        try (ServerSocketChannel listener = start(new Server());
+             SocketChannel connection = Frames.connect(
+                     listener.getLocalAddress())) {
+            Frames.write(connection, Frames.CONFIG, "/no/such/enigma.conf");
+            Frames.write(connection, Frames.END, ByteBuffer.allocate(0));
+            ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+            assertEquals(Frames.ERROR, Frames.readHeader(connection, header));
+            Frames.readText(connection, header.getInt(1));
+            assertEquals(Frames.EXIT, Frames.readHeader(connection, header));
+            ByteBuffer status = ByteBuffer.allocate(1);
+            assertTrue(Frames.readFully(connection, status));
+            assertEquals(1, status.get(0));
+        }
+    }
+
+    @Test
+    public void testMissingConfigKeepsOutput() throws IOException {
+        File in = file(".inp", SETTING1 + "\nFROMHISSHOULDER\n");
+        File out = file(".out", "KEEP ME");
+        try {
+            new Client("/no/such/enigma.conf", in.getPath(), out.getPath());
+            fail("missing configuration accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("KEEP ME", new String(Files.readAllBytes(
+                    out.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testChangedConfigReread() throws IOException {
+        File config = file(".conf", CONFIG);
+        try (ServerSocketChannel listener = start(new Server())) {
+            String input = SETTING1 + "\nFROMHISSHOULDER\n";
+            assertEquals("QVPQS OKOIL PUBKJ " + NL,
+                    run(listener, config, input));
+            Files.write(config.toPath(), CONFIG.replace("I MQ", "I MA")
+                    .getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(config.toPath(),
+                    FileTime.fromMillis(config.lastModified() + 2000));
+            assertFalse(run(listener, config, input)
+                    .equals("QVPQS OKOIL PUBKJ " + NL));
+        }
+    }
+
+    @Test
+    public void testConfigsEvicted() throws IOException {
+        File[] configs = new File[Server.MAX_CONFIGS + 3];
+        String[] names = new String[configs.length];
+        for (int i = 0; i < configs.length; i += 1) {
+            configs[i] = file(".conf", CONFIG);
+            names[i] = configs[i].getPath();
+        }
+        Server server = new Server(names);
+        assertEquals(Server.MAX_CONFIGS, server.configs());
+        try (ServerSocketChannel listener = start(server)) {
+            assertEquals("QVPQS OKOIL PUBKJ " + NL, run(listener, configs[0],
+                    SETTING1 + "\nFROMHISSHOULDER\n"));
+            assertEquals(Server.MAX_CONFIGS, server.configs());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/**
+ * The conversion of arbitrary text by a machine, as done by the stream
+ * adapters: characters in the machine's alphabet are converted, and the
+ * others are treated according to a CharPolicy.  Conversion is in
+ * place, so converting a buffer allocates nothing.
+ *
+ * @author Wendi Zhang
+ */
+class TextConverter {
+
+    /**
+     * A converter using MACHINE, which is set up for the message, and
+     * treating characters not in its alphabet according to POLICY.
+     */
+    TextConverter(Machine machine, CharPolicy policy) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _policy = policy;
+    }
+
+    /**
+     * Convert the LEN characters of BUF starting at OFF in place,
+     * continuing from where the last conversion stopped.  Returns the
+     * number of characters of output, which start at OFF and are fewer
+     * than LEN if characters were dropped.
+     */
+    int convert(char[] buf, int off, int len) {
+        Alphabet alpha = _alphabet;
+        int out = off;
+        for (int i = off; i < off + len; i += 1) {
+            char c = buf[i];
+            if (alpha.contains(c)) {
+                buf[out] = alpha.toChar(_machine.convert(alpha.toInt(c)));
+                out += 1;
+            } else if (_policy == CharPolicy.PASS) {
+                buf[out] = c;
+                out += 1;
+            } else if (_policy == CharPolicy.REJECT) {
+                throw error("character out of range: %s", c);
+            }
+        }
+        return out - off;
+    }
+
+    /**
+     * The machine doing the converting.
+     */
+    private final Machine _machine;
+
+    /**
+     * The alphabet of _machine.
+     */
+    private final Alphabet _alphabet;
+
+    /**
+     * Treatment of characters not in _alphabet.
+     */
+    private final CharPolicy _policy;
+}
@@ -15,7 +15,11 @@ public class UnitTest {
      */
     public static void main(String[] ignored) {
         textui.runClasses(PermutationTest.class, MovingRotorTest.class,
-                MachineTest.class);
+                MachineTest.class, MachinePoolTest.class,
+                KeystreamCacheTest.class, CompiledConfigTest.class,
+                EnigmaStreamTest.class, EnigmaProcessorTest.class,
+                EnigmaTest.class, ChunkRingTest.class, SegmentTest.class,
+                FramesTest.class, ServerTest.class);
     }
 
 }